@@ -3,12 +3,12 @@ package org.literacyapp.handwriting_numbers;
 import android.content.Intent;
 import android.graphics.drawable.Animatable;
 import android.graphics.drawable.Drawable;
-import android.media.MediaPlayer;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 import android.widget.ImageView;
 
+import org.literacyapp.handwriting_numbers.metrics.Metrics;
 import org.literacyapp.handwriting_numbers.util.MediaPlayerHelper;
 
 
@@ -36,22 +36,22 @@ public class FinalActivity extends AppCompatActivity {
                 Drawable drawable = mFinalCheckmarkImageView.getDrawable();
                 ((Animatable) drawable).start();
 
-                MediaPlayer mediaPlayer = MediaPlayerHelper.playLessonCompleted(getApplicationContext());
-                if (mediaPlayer != null){
-                    mediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
-                        @Override
-                        public void onCompletion(MediaPlayer mediaPlayer) {
-                            HandwritingNumbersApplication handwritingNumbersApplication = (HandwritingNumbersApplication) getApplicationContext();
-                            handwritingNumbersApplication.setCompletionCounter(handwritingNumbersApplication.getCompletionCounter() + 1);
-                            if (handwritingNumbersApplication.getCompletionCounter() < 5){
-                                Intent intent = new Intent(getApplicationContext(), WriteNumberActivity.class);
-                                startActivity(intent);
-                            } else {
-                                finishAffinity();
-                            }
+                MediaPlayerHelper.playLessonCompleted(getApplicationContext(), new Runnable() {
+                    @Override
+                    public void run() {
+                        HandwritingNumbersApplication handwritingNumbersApplication = (HandwritingNumbersApplication) getApplicationContext();
+                        handwritingNumbersApplication.setCompletionCounter(handwritingNumbersApplication.getCompletionCounter() + 1);
+                        if (handwritingNumbersApplication.getCompletionCounter() < 5){
+                            Metrics.startRoundTransition();
+                            Intent intent = new Intent(getApplicationContext(), WriteNumberActivity.class);
+                            // This flow counts the rounds itself
+                            intent.putExtra(WriteNumberActivity.EXTRA_SINGLE_SCREEN, false);
+                            startActivity(intent);
+                        } else {
+                            finishAffinity();
                         }
-                    });
-                }
+                    }
+                });
             }
         }, MediaPlayerHelper.DEFAULT_PLAYER_DELAY);
     }
@@ -1,19 +1,145 @@
 package org.literacyapp.handwriting_numbers;
 
 import android.app.Application;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import org.literacyapp.handwriting_numbers.metrics.Metrics;
+import org.literacyapp.handwriting_numbers.recording.AttemptLogWriter;
+import org.literacyapp.handwriting_numbers.util.AudioCache;
+import org.literacyapp.handwriting_numbers.util.BufferPool;
+import org.literacyapp.handwriting_numbers.util.MediaPlayerHelper;
+import org.literacyapp.handwriting_numbers.util.NumberAudioIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Created by sladomic on 28.04.17.
  */
 
 public class HandwritingNumbersApplication extends Application {
+    public static final String ATTEMPT_LOG_FILE = "attempts.hhal";
+    public static final String METRICS_DIRECTORY = "metrics";
+
+    // The offscreen bitmap of a round, with room for one more round
+    private static final long BUFFER_POOL_BYTES = 1024 * 1024;
+
+    // Names the metrics file, every process writes its own
+    private final long processStartTime = System.currentTimeMillis();
+
     private int completionCounter;
 
+    private ModelRegistry modelRegistry;
+
+    private AudioCache audioCache;
+
+    // Built by MainActivity once the content database has been initialized
+    private NumberAudioIndex numberAudioIndex = new NumberAudioIndex();
+
+    // Bitmaps which are handed from one round to the next
+    private BufferPool bufferPool = new BufferPool(BUFFER_POOL_BYTES);
+
+    // Lives as long as the process, the records are synced in batches
+    private AttemptLogWriter attemptLogWriter;
+
     @Override
     public void onCreate() {
         super.onCreate();
 
         completionCounter = 0;
+
+        // Start parsing the graph while the first screen is shown
+        modelRegistry = new ModelRegistry(getAssets(), getCacheDir(), getAssetVersion());
+        modelRegistry.preload();
+
+        // Decode the prompts once, so that feedback is played without delay
+        audioCache = new AudioCache(this);
+        audioCache.load(MediaPlayerHelper.getPromptNames());
+
+        attemptLogWriter = new AttemptLogWriter(new File(getFilesDir(), ATTEMPT_LOG_FILE));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            dumpMetrics();
+        }
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            modelRegistry.trimIfUnused();
+            Log.i(getClass().getName(), "trimming " + bufferPool);
+            bufferPool.trim();
+            Log.i(getClass().getName(), "attempt log: " + attemptLogWriter);
+        }
+    }
+
+    /**
+     * Writes the latency histograms to metrics/metrics-&lt;process start time&gt;.txt in the files
+     * directory, in the background.
+     */
+    public void dumpMetrics() {
+        final File file = new File(new File(getFilesDir(), METRICS_DIRECTORY), "metrics-" + processStartTime + ".txt");
+        final Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        attributes.put("sdk", String.valueOf(Build.VERSION.SDK_INT));
+        attributes.put("version", BuildConfig.VERSION_NAME);
+        attributes.put("classifier", BuildConfig.DIGIT_CLASSIFIER);
+        attributes.put("process_start", String.valueOf(processStartTime));
+        attributes.put("time", String.valueOf(System.currentTimeMillis()));
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (Metrics.class) {
+                    file.getParentFile().mkdirs();
+                    try {
+                        Metrics.write(file, attributes);
+                        Log.i(HandwritingNumbersApplication.class.getName(), "Metrics written to " + file);
+                    } catch (IOException e) {
+                        Log.e(HandwritingNumbersApplication.class.getName(), "Error writing the metrics", e);
+                    }
+                }
+            }
+        }, "MetricsDump");
+        thread.start();
+    }
+
+    /**
+     * The time the APK was installed or last updated, which changes whenever the assets may have
+     * changed. The process start time if it is unknown, so that the assets are extracted again.
+     */
+    private long getAssetVersion() {
+        try {
+            return getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(getClass().getName(), "Package info not found", e);
+            return processStartTime;
+        }
+    }
+
+    public ModelRegistry getModelRegistry() {
+        return modelRegistry;
+    }
+
+    public AudioCache getAudioCache() {
+        return audioCache;
+    }
+
+    public NumberAudioIndex getNumberAudioIndex() {
+        return numberAudioIndex;
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public AttemptLogWriter getAttemptLogWriter() {
+        return attemptLogWriter;
     }
 
     public int getCompletionCounter() {
@@ -36,8 +36,10 @@ public class MainActivity extends AppCompatActivity {
         }
 
         ContentProvider.initializeDb(this);
+        ((HandwritingNumbersApplication) getApplicationContext()).getNumberAudioIndex().build();
 
         Intent intent = new Intent(this, WriteNumberActivity.class);
+        intent.putExtra(WriteNumberActivity.EXTRA_SINGLE_SCREEN, BuildConfig.SINGLE_SCREEN);
         startActivity(intent);
 
         finish();
@@ -0,0 +1,224 @@
+package org.literacyapp.handwriting_numbers;
+
+import android.content.res.AssetManager;
+import android.os.Process;
+import android.util.Log;
+
+import org.literacyapp.handwriting_numbers.metrics.Metrics;
+import org.literacyapp.handwriting_numbers.recognition.AugmentedDigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.CachingDigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.DigitDecision;
+import org.literacyapp.handwriting_numbers.recognition.JavaDigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.tensorflow.TensorFlowDigitClassifier;
+import org.literacyapp.handwriting_numbers.util.MappedAssetLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Process-wide owner of the digit classifier.
+ * <p />
+ *
+ * The model is loaded once in the background and warmed up with a blank input, after which
+ * every {@link WriteNumberActivity} round shares the same classifier. Users are reference
+ * counted, the classifier is only closed when memory is trimmed while nobody is using it.
+ * <p />
+ *
+ * The backend is chosen with {@code BuildConfig.DIGIT_CLASSIFIER}: "tensorflow" for the
+ * TensorFlow graph, "java" for {@link JavaDigitClassifier} with the weights in
+ * {@link #WEIGHT_FILE} and "quantized" for the same classifier with the int8 weights in
+ * {@link #QUANTIZED_WEIGHT_FILE}. Both weight files are produced from the graph by the
+ * GraphConverter of the tools module. The weight files are memory-mapped and read in place.
+ * The TensorFlow graph is still streamed into the heap by TensorFlowInferenceInterface, which
+ * has no way to take a buffer.
+ * <p />
+ *
+ * With {@code BuildConfig.AUGMENTATION_BATCH_SIZE} above 1 the backend is wrapped in an
+ * {@link AugmentedDigitClassifier}, which classifies that many variants of each drawing in one
+ * batch and combines their scores as set by {@code BuildConfig.AUGMENTATION_COMBINE}. The
+ * decision threshold follows the combine strategy, see {@link #getThreshold()}.
+ * <p />
+ *
+ * Every backend is wrapped in a {@link CachingDigitClassifier}, so that the blank warm-up input
+ * and drawings which are recognized again are answered from the cache.
+ */
+public class ModelRegistry {
+
+    public static final String CLASSIFIER_TENSORFLOW = "tensorflow";
+    public static final String CLASSIFIER_JAVA = "java";
+    public static final String CLASSIFIER_QUANTIZED = "quantized";
+
+    private static final String WEIGHT_FILE = "expert-graph.hwnw";
+    private static final String QUANTIZED_WEIGHT_FILE = "expert-graph-q8.hwnw";
+
+    private static final int CACHE_SIZE = 32;
+
+    private final AssetManager assetManager;
+    private final File cacheDir;
+    private final long assetVersion;
+
+    private DigitClassifier classifier;
+    private RuntimeException loadError;
+    private boolean loading;
+    private int refCount;
+
+    /**
+     * @param assetVersion  changes whenever the assets may have changed, e.g. the time the APK
+     *                      was installed or updated, see {@link MappedAssetLoader#map}
+     */
+    public ModelRegistry(AssetManager assetManager, File cacheDir, long assetVersion) {
+        this.assetManager = assetManager;
+        this.cacheDir = cacheDir;
+        this.assetVersion = assetVersion;
+    }
+
+    /**
+     * Starts loading the model in the background, unless it is already loaded or loading.
+     */
+    public synchronized void preload() {
+        if ((classifier != null) || loading) {
+            return;
+        }
+        loading = true;
+        loadError = null;
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                load();
+            }
+        }, "ModelRegistry");
+        thread.start();
+    }
+
+    /**
+     * Registers a user of the model and makes sure that it is being loaded, also if an earlier
+     * load has failed.
+     */
+    public synchronized void acquire() {
+        refCount++;
+        Log.i(getClass().getName(), "acquire, refCount: " + refCount);
+        preload();
+    }
+
+    public synchronized void release() {
+        if (refCount > 0) {
+            refCount--;
+        }
+        Log.i(getClass().getName(), "release, refCount: " + refCount);
+    }
+
+    /**
+     * Returns the loaded classifier, waiting for the background load if needed. Must not be
+     * called from the UI thread. Callers have to synchronize on the classifier while using it.
+     *
+     * @return null if the model could not be loaded, the next {@link #acquire()} tries again
+     */
+    public synchronized DigitClassifier await() throws InterruptedException {
+        while (classifier == null) {
+            if (loadError != null) {
+                return null;
+            }
+            if (!loading) {
+                preload();
+            }
+            wait();
+        }
+        return classifier;
+    }
+
+    /**
+     * @return the score a digit needs to be recognized, which depends on how the scores of the
+     * augmented variants are combined
+     */
+    public float getThreshold() {
+        if (BuildConfig.AUGMENTATION_BATCH_SIZE > 1) {
+            return getCombine().getThreshold();
+        }
+        return DigitDecision.THRESHOLD;
+    }
+
+    /**
+     * Closes the classifier if it is not in use. It will be loaded again by the next
+     * {@link #acquire()}.
+     */
+    public synchronized void trimIfUnused() {
+        if ((refCount == 0) && (classifier != null)) {
+            Log.i(getClass().getName(), "Closing unused model, " + classifier);
+            synchronized (classifier) {
+                classifier.close();
+            }
+            classifier = null;
+        }
+    }
+
+    private void load() {
+        Log.i(getClass().getName(), "load");
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        Runtime runtime = Runtime.getRuntime();
+        long startHeap = runtime.totalMemory() - runtime.freeMemory();
+        long startResidentKb = MappedAssetLoader.readResidentSetKb();
+        DigitClassifier loaded = null;
+        RuntimeException error = null;
+        try {
+            loaded = createClassifier();
+            long loadTime = System.currentTimeMillis() - startTime;
+            warmUp(loaded);
+            Metrics.MODEL_LOAD.recordSince(startNanos);
+            long heapKb = (runtime.totalMemory() - runtime.freeMemory() - startHeap) / 1024;
+            long residentKb = MappedAssetLoader.readResidentSetKb() - startResidentKb;
+            Log.i(getClass().getName(), "Load Success, classifier: " + BuildConfig.DIGIT_CLASSIFIER
+                    + ", load: " + loadTime + " ms"
+                    + ", load and warm up: " + (System.currentTimeMillis() - startTime) + " ms"
+                    + ", heap: +" + heapKb + " KB"
+                    + ", resident: +" + residentKb + " KB");
+        } catch (final Exception e) {
+            error = new RuntimeException("Error initializing " + BuildConfig.DIGIT_CLASSIFIER + " classifier!", e);
+            Log.e(getClass().getName(), null, error);
+        }
+
+        synchronized (this) {
+            classifier = loaded;
+            loadError = error;
+            loading = false;
+            notifyAll();
+        }
+    }
+
+    private DigitClassifier createClassifier() throws IOException {
+        DigitClassifier backend = createBackend();
+        if (BuildConfig.AUGMENTATION_BATCH_SIZE > 1) {
+            backend = new AugmentedDigitClassifier(backend, BuildConfig.AUGMENTATION_BATCH_SIZE, getCombine());
+        }
+        return new CachingDigitClassifier(backend, CACHE_SIZE);
+    }
+
+    private static AugmentedDigitClassifier.Combine getCombine() {
+        return AugmentedDigitClassifier.Combine.valueOf(BuildConfig.AUGMENTATION_COMBINE.toUpperCase(Locale.US));
+    }
+
+    // Not private, so that tests can replace the backend
+    DigitClassifier createBackend() throws IOException {
+        if (CLASSIFIER_JAVA.equals(BuildConfig.DIGIT_CLASSIFIER)) {
+            return new JavaDigitClassifier(MappedAssetLoader.map(assetManager, cacheDir, WEIGHT_FILE, assetVersion));
+        } else if (CLASSIFIER_QUANTIZED.equals(BuildConfig.DIGIT_CLASSIFIER)) {
+            return new JavaDigitClassifier(MappedAssetLoader.map(assetManager, cacheDir, QUANTIZED_WEIGHT_FILE, assetVersion));
+        } else {
+            return new TensorFlowDigitClassifier(assetManager);
+        }
+    }
+
+    /**
+     * Runs a blank input through the model so that the first real recognition does not pay for
+     * lazy initialization.
+     */
+    private void warmUp(DigitClassifier classifier) {
+        float[] pixels = new float[DigitClassifier.INPUT_SIZE * DigitClassifier.INPUT_SIZE];
+        float[] outputs = new float[DigitClassifier.OUTPUT_SIZE];
+        classifier.classify(pixels, outputs);
+    }
+}
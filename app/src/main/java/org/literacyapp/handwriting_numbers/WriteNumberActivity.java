@@ -1,38 +1,65 @@
 package org.literacyapp.handwriting_numbers;
 
-import android.media.MediaPlayer;
+import android.graphics.drawable.Animatable;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import org.literacyapp.contentprovider.ContentProvider;
 import org.literacyapp.contentprovider.dao.AudioDao;
 import org.literacyapp.contentprovider.dao.DaoSession;
 import org.literacyapp.contentprovider.model.content.Number;
+import org.literacyapp.handwriting_numbers.metrics.Metrics;
 import org.literacyapp.handwriting_numbers.util.MediaPlayerHelper;
+import org.literacyapp.handwriting_numbers.util.PreparedSound;
+import org.literacyapp.handwriting_numbers.view.AsyncRecognizer;
 import org.literacyapp.handwriting_numbers.view.DrawModel;
 import org.literacyapp.handwriting_numbers.view.DrawView;
 import org.literacyapp.handwriting_numbers.view.DrawViewOnTouchListener;
-import org.tensorflow.contrib.android.TensorFlowInferenceInterface;
 
 import java.util.List;
 
-public class WriteNumberActivity extends AppCompatActivity implements View.OnTouchListener {
+/**
+ * In single screen mode, which is chosen by {@code BuildConfig.SINGLE_SCREEN}, all rounds of a
+ * session are played in this activity. The drawing view, the classifier and the buffers are kept, the checkmark is animated
+ * on top of the drawing and the number of the next round is chosen and its sound prepared while
+ * the round is celebrated. Otherwise every round starts {@link FinalActivity}, which starts a
+ * new instance of this activity.
+ */
+public class WriteNumberActivity extends AppCompatActivity implements View.OnTouchListener, DrawViewOnTouchListener.OnNumberWrittenListener {
+
+    public static final String EXTRA_SINGLE_SCREEN = "single_screen";
+
+    public static final int ROUNDS_PER_SESSION = 5;
 
     private AudioDao audioDao;
+    private List<Number> unlockedNumbers;
     private Number number;
+    private Number nextNumber;
+    // The sound of the number of the current or next round, null if it has to be looked up
+    private PreparedSound numberSound;
+
+    private boolean singleScreen;
+    private int completedRounds;
+    private boolean resumed;
+    // The celebration ended while the activity was paused, onResume starts the next round
+    private boolean nextRoundPending;
+
+    private TextView textView;
+    private ImageView checkmarkImageView;
 
     private static final int PIXEL_WIDTH = 280;
 
     private DrawModel mModel;
     private DrawView mDrawView;
 
-    private static final String MODEL_FILE = "file:///android_asset/expert-graph.pb";
-
-    private TensorFlowInferenceInterface inferenceInterface;
+    private ModelRegistry modelRegistry;
+    private AsyncRecognizer recognizer;
+    private DrawViewOnTouchListener listener;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -44,32 +71,35 @@ public class WriteNumberActivity extends AppCompatActivity implements View.OnTou
         DaoSession daoSession = ContentProvider.getDaoSession();
         audioDao = daoSession.getAudioDao();
 
-        List<Number> unlockedNumbers = ContentProvider.getUnlockedNumbers();
+        singleScreen = getIntent().getBooleanExtra(EXTRA_SINGLE_SCREEN, BuildConfig.SINGLE_SCREEN);
+
+        // Queried once per session, the unlocked numbers do not change during it
+        unlockedNumbers = ContentProvider.getUnlockedNumbers();
         number = unlockedNumbers.get((int)(Math.random() * unlockedNumbers.size()));
         Log.i(getClass().getName(), "number: " + number);
-        TextView textView = (TextView) findViewById(R.id.textView);
+        numberSound = MediaPlayerHelper.prepareNumberSound(getApplicationContext(), number);
+        textView = (TextView) findViewById(R.id.textView);
         textView.setText(number.getValue().toString());
+        checkmarkImageView = (ImageView) findViewById(R.id.checkmark);
         // Set on listener to restart the drawing with a blank screen
         textView.setOnTouchListener(this);
 
-        initTensorFlowAndLoadModel();
+        modelRegistry = ((HandwritingNumbersApplication) getApplicationContext()).getModelRegistry();
+        modelRegistry.acquire();
 
         mModel = new DrawModel(PIXEL_WIDTH, PIXEL_WIDTH);
 
         mDrawView = (DrawView) findViewById(R.id.view_draw);
         mDrawView.setModel(mModel);
-        DrawViewOnTouchListener listener = new DrawViewOnTouchListener(mDrawView, mModel, inferenceInterface, number.getValue(), getApplicationContext());
-        mDrawView.setOnTouchListener(listener);
-    }
-
-    private void initTensorFlowAndLoadModel() {
-        Log.i(getClass().getName(), "initTensorFlowAndLoadModel");
-        try {
-            inferenceInterface = new TensorFlowInferenceInterface(getAssets(), MODEL_FILE);
-            Log.d(getClass().getName(), "Load Success");
-        } catch (final Exception e) {
-            throw new RuntimeException("Error initializing TensorFlow!", e);
+        mDrawView.setBufferPool(((HandwritingNumbersApplication) getApplicationContext()).getBufferPool());
+        recognizer = new AsyncRecognizer(modelRegistry);
+        listener = new DrawViewOnTouchListener(mDrawView, mModel, recognizer, number.getValue(), getApplicationContext());
+        listener.setThreshold(modelRegistry.getThreshold());
+        listener.setAttemptLog(((HandwritingNumbersApplication) getApplicationContext()).getAttemptLogWriter());
+        if (singleScreen) {
+            listener.setOnNumberWrittenListener(this);
         }
+        mDrawView.setOnTouchListener(listener);
     }
 
     @Override
@@ -78,24 +108,120 @@ public class WriteNumberActivity extends AppCompatActivity implements View.OnTou
         super.onResume();
 
         mDrawView.onResume();
+        resumed = true;
+
+        if (nextRoundPending) {
+            nextRoundPending = false;
+            startNextRound();
+        } else if (nextNumber == null) {
+            playInstructions();
+        }
+        // Otherwise the round is being celebrated and the next one plays them
+    }
 
-        MediaPlayer mediaPlayer = MediaPlayerHelper.playInstructionSound(getApplicationContext());
-        if (mediaPlayer != null){
-            mediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
-                @Override
-                public void onCompletion(MediaPlayer mediaPlayer) {
+    private void playInstructions() {
+        MediaPlayerHelper.playInstructionSound(getApplicationContext(), new Runnable() {
+            @Override
+            public void run() {
+                if (numberSound != null) {
+                    numberSound.start();
+                    numberSound = null;
+                } else {
                     MediaPlayerHelper.playNumberSound(getApplicationContext(), audioDao, number);
                 }
-            });
+            }
+        });
+    }
+
+    @Override
+    public void onNumberWritten(int writtenNumber) {
+        listener.setEnabled(false);
+
+        // Prepare the next round while the checkmark is shown
+        nextNumber = unlockedNumbers.get((int)(Math.random() * unlockedNumbers.size()));
+        Log.i(getClass().getName(), "next number: " + nextNumber);
+        if (numberSound != null) {
+            numberSound.release();
+        }
+        numberSound = MediaPlayerHelper.prepareNumberSound(getApplicationContext(), nextNumber);
+
+        checkmarkImageView.setVisibility(View.VISIBLE);
+        Animatable checkmark = (Animatable) checkmarkImageView.getDrawable();
+        checkmark.stop();
+        checkmark.start();
+
+        MediaPlayerHelper.playLessonCompleted(getApplicationContext(), new Runnable() {
+            @Override
+            public void run() {
+                if (isFinishing()) {
+                    return;
+                }
+                completedRounds++;
+                if (completedRounds < ROUNDS_PER_SESSION) {
+                    if (resumed) {
+                        startNextRound();
+                    } else {
+                        nextRoundPending = true;
+                    }
+                } else {
+                    finishAffinity();
+                }
+            }
+        });
+    }
+
+    private void startNextRound() {
+        Metrics.startRoundTransition();
+        number = nextNumber;
+        nextNumber = null;
+        textView.setText(number.getValue().toString());
+        checkmarkImageView.setVisibility(View.GONE);
+
+        mModel.clear();
+        mDrawView.reset();
+        mDrawView.invalidate();
+        listener.setNumberToWrite(number.getValue());
+        listener.setEnabled(true);
+
+        // Runs before the frame which shows the new round is drawn
+        mDrawView.postOnAnimation(new Runnable() {
+            @Override
+            public void run() {
+                Metrics.endRoundTransition();
+            }
+        });
+        playInstructions();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+        super.onWindowFocusChanged(hasFocus);
+
+        if (hasFocus) {
+            // The first frame of the round is on screen
+            Metrics.endRoundTransition();
         }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        resumed = false;
         mDrawView.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        Log.i(getClass().getName(), "onDestroy");
+        if (numberSound != null) {
+            numberSound.release();
+            numberSound = null;
+        }
+        recognizer.release();
+        modelRegistry.release();
+        super.onDestroy();
+    }
+
     @Override
     public boolean onTouch(View view, MotionEvent motionEvent) {
         mModel.clear();
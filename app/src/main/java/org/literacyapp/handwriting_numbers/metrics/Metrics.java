@@ -0,0 +1,128 @@
+package org.literacyapp.handwriting_numbers.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency histograms of the stages of a round, shared by the whole process.
+ * <p />
+ *
+ * Snapshots are written in a line-based text format, so that the files of many devices can be
+ * aggregated offline. Readers should skip line types they do not know:
+ * <pre>
+ * metrics 1
+ * attribute &lt;key&gt; &lt;value&gt;
+ * histogram &lt;name&gt; count &lt;n&gt; sum_ns &lt;ns&gt; max_ns &lt;ns&gt; p50_ns &lt;ns&gt; p90_ns &lt;ns&gt; p99_ns &lt;ns&gt;
+ * bucket &lt;name&gt; &lt;lower bound ns&gt; &lt;count&gt;
+ * end
+ * </pre>
+ * Every histogram is listed, buckets only if their count is not 0. Attribute values have their
+ * whitespace replaced by '_'.
+ */
+public final class Metrics {
+
+    public static final int FORMAT_VERSION = 1;
+
+    // From the input event to the frame which shows it
+    public static final LatencyHistogram TOUCH_TO_FRAME = new LatencyHistogram("touch_to_frame");
+    // From ACTION_UP to the end of the decision
+    public static final LatencyHistogram TOUCH_UP_TOTAL = new LatencyHistogram("touch_up_total");
+    // Rasterizing and preprocessing the strokes
+    public static final LatencyHistogram RASTERIZE = new LatencyHistogram("rasterize");
+    // The whole classifier call, including the cache
+    public static final LatencyHistogram CLASSIFY = new LatencyHistogram("classify");
+    // The steps of the TensorFlow backend
+    public static final LatencyHistogram CLASSIFY_FEED = new LatencyHistogram("classify_feed");
+    public static final LatencyHistogram CLASSIFY_RUN = new LatencyHistogram("classify_run");
+    public static final LatencyHistogram CLASSIFY_FETCH = new LatencyHistogram("classify_fetch");
+    public static final LatencyHistogram DECIDE = new LatencyHistogram("decide");
+    // Creating and warming up the classifier
+    public static final LatencyHistogram MODEL_LOAD = new LatencyHistogram("model_load");
+    // From the play request to the start of the sound
+    public static final LatencyHistogram AUDIO_START = new LatencyHistogram("audio_start");
+    // From the end of a round to the next round being shown
+    public static final LatencyHistogram ROUND_TRANSITION = new LatencyHistogram("round_transition");
+
+    private static final LatencyHistogram[] HISTOGRAMS = {
+            TOUCH_TO_FRAME, TOUCH_UP_TOTAL, RASTERIZE, CLASSIFY, CLASSIFY_FEED, CLASSIFY_RUN,
+            CLASSIFY_FETCH, DECIDE, MODEL_LOAD, AUDIO_START, ROUND_TRANSITION
+    };
+
+    private static final AtomicLong roundTransitionStart = new AtomicLong();
+
+    private Metrics() {
+    }
+
+    public static LatencyHistogram[] getHistograms() {
+        return HISTOGRAMS.clone();
+    }
+
+    /**
+     * Marks the end of a round, see {@link #endRoundTransition()}.
+     */
+    public static void startRoundTransition() {
+        roundTransitionStart.set(System.nanoTime());
+    }
+
+    /**
+     * Records the time since {@link #startRoundTransition()}, if it has been called since the
+     * last transition ended.
+     */
+    public static void endRoundTransition() {
+        long startTime = roundTransitionStart.getAndSet(0);
+        if (startTime != 0) {
+            ROUND_TRANSITION.recordSince(startTime);
+        }
+    }
+
+    public static void write(Writer writer, Map<String, String> attributes) throws IOException {
+        writer.write("metrics " + FORMAT_VERSION + "\n");
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            writer.write("attribute " + clean(attribute.getKey()) + " " + clean(attribute.getValue()) + "\n");
+        }
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            writer.write("histogram " + snapshot.getName()
+                    + " count " + snapshot.getCount()
+                    + " sum_ns " + snapshot.getSum()
+                    + " max_ns " + snapshot.getMax()
+                    + " p50_ns " + snapshot.getValueAtPercentile(50)
+                    + " p90_ns " + snapshot.getValueAtPercentile(90)
+                    + " p99_ns " + snapshot.getValueAtPercentile(99) + "\n");
+            for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+                long count = snapshot.getBucketCount(i);
+                if (count != 0) {
+                    writer.write("bucket " + snapshot.getName() + " " + LatencyHistogram.bucketLowerBound(i) + " " + count + "\n");
+                }
+            }
+        }
+        writer.write("end\n");
+    }
+
+    /**
+     * Writes a snapshot to a temporary file next to {@code file} and renames it, so that readers
+     * never see a partial snapshot.
+     */
+    public static void write(File file, Map<String, String> attributes) throws IOException {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), "UTF-8"));
+        try {
+            write(writer, attributes);
+        } finally {
+            writer.close();
+        }
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException("Cannot rename " + temporaryFile + " to " + file);
+        }
+    }
+
+    private static String clean(String value) {
+        return (value == null) ? "" : value.trim().replaceAll("\\s+", "_");
+    }
+}
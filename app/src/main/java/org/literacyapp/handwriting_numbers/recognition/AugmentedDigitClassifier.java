@@ -0,0 +1,262 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+/**
+ * {@link DigitClassifier} which classifies several variants of each drawing and combines their
+ * scores, so that a digit is not rejected because it is drawn a little off-center, tilted or
+ * with a thin stroke.
+ * <p />
+ *
+ * The first variant is the drawing itself, followed by shifts of one pixel, slight rotations and
+ * a thicker and a thinner stroke, up to the batch size. The variants of all drawings, e.g. the
+ * digits of a number, are classified with one batch call to the backend.
+ * <p />
+ *
+ * The combined scores are not as sharp as the score of a single classification, they have to be
+ * compared with the threshold of the {@link Combine} strategy, see {@link Combine#getThreshold()}.
+ * <p />
+ *
+ * The buffers grow once to the largest number of drawings which are classified together, after
+ * that {@link #classify(float[], int, float[])} does not allocate. An instance is not
+ * thread-safe.
+ */
+public class AugmentedDigitClassifier implements DigitClassifier {
+
+    public enum Combine {
+        /**
+         * Average of the scores of all variants. Accepted from 0.5, no other digit can score
+         * higher then.
+         */
+        MEAN(0.5f),
+        /**
+         * Highest score of any variant. Accepted like a single classification, i.e. if any variant
+         * is.
+         */
+        MAX(DigitDecision.THRESHOLD),
+        /**
+         * Share of the variants for which the digit has the highest score, 1 if all agree.
+         * Accepted if at least half of the variants agree.
+         */
+        VOTE(0.5f);
+
+        private final float threshold;
+
+        Combine(float threshold) {
+            this.threshold = threshold;
+        }
+
+        /**
+         * @return the combined score a digit needs to be recognized, instead of
+         * {@link DigitDecision#THRESHOLD}
+         */
+        public float getThreshold() {
+            return threshold;
+        }
+    }
+
+    public static final int MAX_BATCH_SIZE = 9;
+
+    private static final float ROTATION_DEGREES = 8;
+
+    private static final int INPUT_LENGTH = INPUT_SIZE * INPUT_SIZE;
+
+    private final DigitClassifier delegate;
+    private final int batchSize;
+    private final Combine combine;
+
+    private float[] mBatch;
+    private float[] mBatchOutputs;
+
+    public AugmentedDigitClassifier(DigitClassifier delegate, int batchSize, Combine combine) {
+        if ((batchSize < 1) || (batchSize > MAX_BATCH_SIZE)) {
+            throw new IllegalArgumentException("batchSize must be between 1 and " + MAX_BATCH_SIZE + ": " + batchSize);
+        }
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.combine = combine;
+        mBatch = new float[batchSize * INPUT_LENGTH];
+        mBatchOutputs = new float[batchSize * OUTPUT_SIZE];
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Combine getCombine() {
+        return combine;
+    }
+
+    @Override
+    public void classify(float[] pixels, float[] outputs) {
+        classify(pixels, 1, outputs);
+    }
+
+    @Override
+    public void classify(float[] pixels, int drawingCount, float[] outputs) {
+        if (mBatch.length < drawingCount * batchSize * INPUT_LENGTH) {
+            mBatch = new float[drawingCount * batchSize * INPUT_LENGTH];
+            mBatchOutputs = new float[drawingCount * batchSize * OUTPUT_SIZE];
+        }
+        for (int drawing = 0; drawing < drawingCount; drawing++) {
+            for (int variant = 0; variant < batchSize; variant++) {
+                createVariant(variant, pixels, drawing * INPUT_LENGTH, mBatch, (drawing * batchSize + variant) * INPUT_LENGTH);
+            }
+        }
+        delegate.classify(mBatch, drawingCount * batchSize, mBatchOutputs);
+
+        for (int drawing = 0; drawing < drawingCount; drawing++) {
+            combine(drawing * batchSize * OUTPUT_SIZE, outputs, drawing * OUTPUT_SIZE);
+        }
+    }
+
+    /**
+     * Combines the scores of the variants of one drawing, which start at batchOffset in
+     * {@link #mBatchOutputs}.
+     */
+    private void combine(int batchOffset, float[] outputs, int outputOffset) {
+        for (int digit = 0; digit < OUTPUT_SIZE; digit++) {
+            outputs[outputOffset + digit] = 0;
+        }
+        for (int variant = 0; variant < batchSize; variant++) {
+            int base = batchOffset + variant * OUTPUT_SIZE;
+            if (combine == Combine.VOTE) {
+                int best = 0;
+                for (int digit = 1; digit < OUTPUT_SIZE; digit++) {
+                    if (mBatchOutputs[base + digit] > mBatchOutputs[base + best]) {
+                        best = digit;
+                    }
+                }
+                outputs[outputOffset + best] += 1f / batchSize;
+            } else if (combine == Combine.MAX) {
+                for (int digit = 0; digit < OUTPUT_SIZE; digit++) {
+                    float score = mBatchOutputs[base + digit];
+                    if ((variant == 0) || (score > outputs[outputOffset + digit])) {
+                        outputs[outputOffset + digit] = score;
+                    }
+                }
+            } else {
+                for (int digit = 0; digit < OUTPUT_SIZE; digit++) {
+                    outputs[outputOffset + digit] += mBatchOutputs[base + digit] / batchSize;
+                }
+            }
+        }
+    }
+
+    private static void createVariant(int variant, float[] in, int inOffset, float[] out, int outOffset) {
+        switch (variant) {
+            case 0:
+                System.arraycopy(in, inOffset, out, outOffset, INPUT_LENGTH);
+                break;
+            case 1:
+                shift(in, inOffset, 1, 0, out, outOffset);
+                break;
+            case 2:
+                shift(in, inOffset, -1, 0, out, outOffset);
+                break;
+            case 3:
+                shift(in, inOffset, 0, 1, out, outOffset);
+                break;
+            case 4:
+                shift(in, inOffset, 0, -1, out, outOffset);
+                break;
+            case 5:
+                rotate(in, inOffset, ROTATION_DEGREES, out, outOffset);
+                break;
+            case 6:
+                rotate(in, inOffset, -ROTATION_DEGREES, out, outOffset);
+                break;
+            case 7:
+                thicken(in, inOffset, out, outOffset);
+                break;
+            default:
+                thin(in, inOffset, out, outOffset);
+                break;
+        }
+    }
+
+    private static void shift(float[] in, int inOffset, int dx, int dy, float[] out, int outOffset) {
+        for (int y = 0; y < INPUT_SIZE; y++) {
+            int sy = y - dy;
+            for (int x = 0; x < INPUT_SIZE; x++) {
+                int sx = x - dx;
+                boolean inside = (sx >= 0) && (sx < INPUT_SIZE) && (sy >= 0) && (sy < INPUT_SIZE);
+                out[outOffset + y * INPUT_SIZE + x] = inside ? in[inOffset + sy * INPUT_SIZE + sx] : 0;
+            }
+        }
+    }
+
+    /**
+     * Rotates around the center, with bilinear sampling.
+     */
+    private static void rotate(float[] in, int inOffset, float degrees, float[] out, int outOffset) {
+        double radians = Math.toRadians(degrees);
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+        float center = (INPUT_SIZE - 1) / 2f;
+        for (int y = 0; y < INPUT_SIZE; y++) {
+            for (int x = 0; x < INPUT_SIZE; x++) {
+                // Inverse rotation of the output position into the input
+                float cx = x - center;
+                float cy = y - center;
+                float sx = cos * cx + sin * cy + center;
+                float sy = -sin * cx + cos * cy + center;
+                out[outOffset + y * INPUT_SIZE + x] = sample(in, inOffset, sx, sy);
+            }
+        }
+    }
+
+    private static float sample(float[] in, int inOffset, float x, float y) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        float fx = x - x0;
+        float fy = y - y0;
+        float top = (1 - fx) * pixel(in, inOffset, x0, y0) + fx * pixel(in, inOffset, x0 + 1, y0);
+        float bottom = (1 - fx) * pixel(in, inOffset, x0, y0 + 1) + fx * pixel(in, inOffset, x0 + 1, y0 + 1);
+        return (1 - fy) * top + fy * bottom;
+    }
+
+    private static float pixel(float[] in, int inOffset, int x, int y) {
+        if ((x < 0) || (x >= INPUT_SIZE) || (y < 0) || (y >= INPUT_SIZE)) {
+            return 0;
+        }
+        return in[inOffset + y * INPUT_SIZE + x];
+    }
+
+    /**
+     * Grows the stroke by taking the most ink of the pixel and its four neighbours.
+     */
+    private static void thicken(float[] in, int inOffset, float[] out, int outOffset) {
+        for (int y = 0; y < INPUT_SIZE; y++) {
+            for (int x = 0; x < INPUT_SIZE; x++) {
+                float value = pixel(in, inOffset, x, y);
+                value = Math.max(value, pixel(in, inOffset, x - 1, y));
+                value = Math.max(value, pixel(in, inOffset, x + 1, y));
+                value = Math.max(value, pixel(in, inOffset, x, y - 1));
+                value = Math.max(value, pixel(in, inOffset, x, y + 1));
+                out[outOffset + y * INPUT_SIZE + x] = value;
+            }
+        }
+    }
+
+    /**
+     * Fades the edges of the stroke halfway to the least ink of the four neighbours. A full erosion
+     * would wipe out the thin strokes of the 28x28 input.
+     */
+    private static void thin(float[] in, int inOffset, float[] out, int outOffset) {
+        for (int y = 0; y < INPUT_SIZE; y++) {
+            for (int x = 0; x < INPUT_SIZE; x++) {
+                float value = pixel(in, inOffset, x, y);
+                float leastInk = value;
+                leastInk = Math.min(leastInk, pixel(in, inOffset, x - 1, y));
+                leastInk = Math.min(leastInk, pixel(in, inOffset, x + 1, y));
+                leastInk = Math.min(leastInk, pixel(in, inOffset, x, y - 1));
+                leastInk = Math.min(leastInk, pixel(in, inOffset, x, y + 1));
+                out[outOffset + y * INPUT_SIZE + x] = (value + leastInk) / 2;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,192 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+/**
+ * {@link DigitClassifier} which remembers the outputs of the most recently classified inputs,
+ * so that blank canvases, repeated taps and redrawn digits are not classified again.
+ * <p />
+ *
+ * The inputs are quantized to {@link #QUANTIZATION_STEP} wide gray levels, so inputs which only
+ * differ by a little antialiasing share an entry. Entries are found by a 64-bit hash of the
+ * quantized input and confirmed by comparing the quantized input itself, the least recently
+ * used entry is evicted when the cache is full.
+ * <p />
+ *
+ * All entries are allocated up front, a lookup does not allocate. Unlike other classifiers this
+ * one is thread-safe.
+ */
+public class CachingDigitClassifier implements DigitClassifier {
+
+    public static final float QUANTIZATION_STEP = 8;
+
+    private static final int INPUT_LENGTH = INPUT_SIZE * INPUT_SIZE;
+    private static final int NONE = -1;
+
+    private final DigitClassifier delegate;
+    private final int capacity;
+
+    private final byte[] mInputs;
+    private final float[] mOutputs;
+    private final long[] mHashes;
+    private int mSize;
+
+    // Doubly linked list of the entries, from most to least recently used
+    private final int[] mPrevious;
+    private final int[] mNext;
+    private int mHead = NONE;
+    private int mTail = NONE;
+
+    private final byte[] mQuantized = new byte[INPUT_LENGTH];
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    public CachingDigitClassifier(DigitClassifier delegate, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.delegate = delegate;
+        this.capacity = capacity;
+        mInputs = new byte[capacity * INPUT_LENGTH];
+        mOutputs = new float[capacity * OUTPUT_SIZE];
+        mHashes = new long[capacity];
+        mPrevious = new int[capacity];
+        mNext = new int[capacity];
+    }
+
+    @Override
+    public synchronized void classify(float[] pixels, float[] outputs) {
+        long hash = quantize(pixels);
+
+        for (int entry = mHead; entry != NONE; entry = mNext[entry]) {
+            if ((mHashes[entry] == hash) && sameInput(entry)) {
+                mHitCount++;
+                moveToHead(entry);
+                System.arraycopy(mOutputs, entry * OUTPUT_SIZE, outputs, 0, OUTPUT_SIZE);
+                return;
+            }
+        }
+
+        mMissCount++;
+        delegate.classify(pixels, outputs);
+
+        int entry;
+        if (mSize < capacity) {
+            entry = mSize++;
+        } else {
+            entry = mTail;
+            unlink(entry);
+            mEvictionCount++;
+        }
+        mHashes[entry] = hash;
+        System.arraycopy(mQuantized, 0, mInputs, entry * INPUT_LENGTH, INPUT_LENGTH);
+        System.arraycopy(outputs, 0, mOutputs, entry * OUTPUT_SIZE, OUTPUT_SIZE);
+        linkAtHead(entry);
+    }
+
+    /**
+     * Batches are passed on to the backend without being cached.
+     */
+    @Override
+    public synchronized void classify(float[] pixels, int batchSize, float[] outputs) {
+        delegate.classify(pixels, batchSize, outputs);
+    }
+
+    /**
+     * Quantizes the pixels into {@link #mQuantized}.
+     *
+     * @return the FNV-1a hash of the quantized pixels
+     */
+    private long quantize(float[] pixels) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < INPUT_LENGTH; i++) {
+            int level = (int) (pixels[i] / QUANTIZATION_STEP + 0.5f);
+            byte value = (byte) Math.max(0, Math.min(255, level));
+            mQuantized[i] = value;
+            hash = (hash ^ (value & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private boolean sameInput(int entry) {
+        int offset = entry * INPUT_LENGTH;
+        for (int i = 0; i < INPUT_LENGTH; i++) {
+            if (mInputs[offset + i] != mQuantized[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void moveToHead(int entry) {
+        if (entry != mHead) {
+            unlink(entry);
+            linkAtHead(entry);
+        }
+    }
+
+    private void unlink(int entry) {
+        int previous = mPrevious[entry];
+        int next = mNext[entry];
+        if (previous != NONE) {
+            mNext[previous] = next;
+        } else {
+            mHead = next;
+        }
+        if (next != NONE) {
+            mPrevious[next] = previous;
+        } else {
+            mTail = previous;
+        }
+    }
+
+    private void linkAtHead(int entry) {
+        mPrevious[entry] = NONE;
+        mNext[entry] = mHead;
+        if (mHead != NONE) {
+            mPrevious[mHead] = entry;
+        } else {
+            mTail = entry;
+        }
+        mHead = entry;
+    }
+
+    /**
+     * Removes all entries, the counters are kept.
+     */
+    public synchronized void clear() {
+        mSize = 0;
+        mHead = NONE;
+        mTail = NONE;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    public synchronized int getSize() {
+        return mSize;
+    }
+
+    @Override
+    public synchronized void close() {
+        clear();
+        delegate.close();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CachingDigitClassifier{size=" + mSize + "/" + capacity
+                + ", hits=" + mHitCount
+                + ", misses=" + mMissCount
+                + ", evictions=" + mEvictionCount + "}";
+    }
+}
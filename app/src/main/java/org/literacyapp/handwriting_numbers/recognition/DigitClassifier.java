@@ -0,0 +1,35 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+/**
+ * Classifies a 28x28 grayscale drawing into the digits 0-9.
+ * <p />
+ *
+ * Implementations are not required to be thread-safe, callers that share a classifier between
+ * threads have to synchronize on it.
+ */
+public interface DigitClassifier {
+
+    int INPUT_SIZE = 28;
+    int OUTPUT_SIZE = 10;
+
+    /**
+     * @param pixels   INPUT_SIZE * INPUT_SIZE values, 0 for blank and 255 for ink
+     * @param outputs  receives OUTPUT_SIZE scores, one per digit
+     */
+    void classify(float[] pixels, float[] outputs);
+
+    /**
+     * Classifies several drawings with one call, which is cheaper than one call per drawing for
+     * backends with a fixed cost per call.
+     *
+     * @param pixels     batchSize drawings of INPUT_SIZE * INPUT_SIZE values each, one after another
+     * @param batchSize  number of drawings
+     * @param outputs    receives OUTPUT_SIZE scores per drawing, in the same order
+     */
+    void classify(float[] pixels, int batchSize, float[] outputs);
+
+    /**
+     * Frees the resources of the classifier. It must not be used afterwards.
+     */
+    void close();
+}
@@ -0,0 +1,59 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+/**
+ * Turns the classifier outputs into a recognized digit.
+ */
+public final class DigitDecision {
+
+    public static final int NONE = -1;
+
+    /**
+     * Score a digit needs when a drawing is classified once, the model is only trusted when its
+     * output is saturated.
+     */
+    public static final float THRESHOLD = 1.0f;
+
+    private DigitDecision() {
+    }
+
+    /**
+     * @return the highest digit whose output reaches the threshold, or {@link #NONE}
+     */
+    public static int recognize(float[] outputs, float threshold) {
+        return recognize(outputs, 0, outputs.length, threshold);
+    }
+
+    /**
+     * Same as {@link #recognize(float[], float)} for the outputs at offset to offset + count.
+     */
+    public static int recognize(float[] outputs, int offset, int count, float threshold) {
+        int recognizedNumber = NONE;
+        for (int i = 0; i < count; i++) {
+            if (outputs[offset + i] >= threshold) {
+                recognizedNumber = i;
+            }
+        }
+        return recognizedNumber;
+    }
+
+    /**
+     * Composes a number from the outputs of its digits, most significant first.
+     *
+     * @param outputs     {@code digitCount} blocks of {@code count} outputs, one per digit
+     * @return the number, or {@link #NONE} if a digit has not been recognized
+     */
+    public static int recognizeNumber(float[] outputs, int digitCount, int count, float threshold) {
+        if (digitCount == 0) {
+            return NONE;
+        }
+        int number = 0;
+        for (int digit = 0; digit < digitCount; digit++) {
+            int recognizedDigit = recognize(outputs, digit * count, count, threshold);
+            if (recognizedDigit == NONE) {
+                return NONE;
+            }
+            number = number * count + recognizedDigit;
+        }
+        return number;
+    }
+}
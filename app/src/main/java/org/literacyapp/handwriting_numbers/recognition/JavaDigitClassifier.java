@@ -0,0 +1,450 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link DigitClassifier} which runs a small CNN/MLP in plain Java, without the native
+ * TensorFlow library.
+ * <p />
+ *
+ * The weights are read in place from a buffer in the {@link WeightFile} format, which may be
+ * memory-mapped. The activations are kept in two buffers that are allocated once and used in
+ * turn by the layers, so {@link #classify(float[], float[])} does not allocate.
+ * <p />
+ *
+ * Conv and dense layers may be quantized to int8 (see {@link WeightFileWriter#quantizedConv}).
+ * Such layers quantize their input with a scale taken from its largest value, accumulate the
+ * products in ints and scale the sums back to floats. They need a quarter of the weight memory.
+ * Their weights are copied out of the buffer one kernel or row at a time, so that the inner
+ * loops only index arrays. In ClassifierBenchmark on a desktop JVM that makes the int8 network
+ * about a fifth faster than the float one, it has not been measured on a device.
+ */
+public class JavaDigitClassifier implements DigitClassifier {
+
+    private final Layer[] layers;
+    private final int inputLength;
+
+    private final float[] mActivationA;
+    private final float[] mActivationB;
+
+    public JavaDigitClassifier(ByteBuffer weightFile) {
+        ByteBuffer buffer = weightFile.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int magic = buffer.getInt();
+        if (magic != WeightFile.MAGIC) {
+            throw new IllegalArgumentException("Not a weight file, magic: " + Integer.toHexString(magic));
+        }
+        int version = buffer.getInt();
+        if (version != WeightFile.VERSION) {
+            throw new IllegalArgumentException("Unsupported weight file version: " + version);
+        }
+
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int channels = buffer.getInt();
+        if ((width != INPUT_SIZE) || (height != INPUT_SIZE) || (channels != 1)) {
+            throw new IllegalArgumentException("Unsupported input shape: " + width + "x" + height + "x" + channels);
+        }
+        inputLength = width * height * channels;
+
+        List<Layer> layerList = new ArrayList<>();
+        int maxLength = inputLength;
+        int layerCount = buffer.getInt();
+        for (int i = 0; i < layerCount; i++) {
+            int type = buffer.getInt();
+            Layer layer;
+            if (type == WeightFile.LAYER_CONV) {
+                int outChannels = buffer.getInt();
+                int kernelSize = buffer.getInt();
+                FloatBuffer weights = floats(buffer, outChannels * kernelSize * kernelSize * channels);
+                FloatBuffer bias = floats(buffer, outChannels);
+                layer = new ConvLayer(width, height, channels, outChannels, kernelSize, weights, bias);
+            } else if (type == WeightFile.LAYER_CONV_Q8) {
+                int outChannels = buffer.getInt();
+                int kernelSize = buffer.getInt();
+                float weightScale = buffer.getFloat();
+                ByteBuffer weights = bytes(buffer, outChannels * kernelSize * kernelSize * channels);
+                FloatBuffer bias = floats(buffer, outChannels);
+                layer = new QuantizedConvLayer(width, height, channels, outChannels, kernelSize, weightScale, weights, bias);
+            } else if (type == WeightFile.LAYER_MAX_POOL) {
+                layer = new MaxPoolLayer(width, height, channels, buffer.getInt());
+            } else if (type == WeightFile.LAYER_DENSE) {
+                int outSize = buffer.getInt();
+                int inSize = width * height * channels;
+                FloatBuffer weights = floats(buffer, outSize * inSize);
+                FloatBuffer bias = floats(buffer, outSize);
+                layer = new DenseLayer(inSize, outSize, weights, bias);
+            } else if (type == WeightFile.LAYER_DENSE_Q8) {
+                int outSize = buffer.getInt();
+                int inSize = width * height * channels;
+                float weightScale = buffer.getFloat();
+                ByteBuffer weights = bytes(buffer, outSize * inSize);
+                FloatBuffer bias = floats(buffer, outSize);
+                layer = new QuantizedDenseLayer(inSize, outSize, weightScale, weights, bias);
+            } else if (type == WeightFile.LAYER_RELU) {
+                layer = new ReluLayer(width, height, channels);
+            } else if (type == WeightFile.LAYER_SOFTMAX) {
+                layer = new SoftmaxLayer(width, height, channels);
+            } else {
+                throw new IllegalArgumentException("Unknown layer type " + type + " at layer " + i);
+            }
+            layerList.add(layer);
+
+            width = layer.outWidth;
+            height = layer.outHeight;
+            channels = layer.outChannels;
+            maxLength = Math.max(maxLength, width * height * channels);
+        }
+        if (width * height * channels != OUTPUT_SIZE) {
+            throw new IllegalArgumentException("Unsupported output size: " + (width * height * channels));
+        }
+
+        layers = layerList.toArray(new Layer[layerList.size()]);
+        mActivationA = new float[maxLength];
+        mActivationB = new float[maxLength];
+    }
+
+    /**
+     * Returns a view of the next {@code count} floats and skips them.
+     */
+    private static FloatBuffer floats(ByteBuffer buffer, int count) {
+        ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit(count * 4);
+        buffer.position(buffer.position() + count * 4);
+        return slice.asFloatBuffer();
+    }
+
+    /**
+     * Returns a view of the next {@code count} bytes and skips them, including the padding up to
+     * a multiple of 4 bytes.
+     */
+    private static ByteBuffer bytes(ByteBuffer buffer, int count) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(count);
+        buffer.position(buffer.position() + (count + 3) / 4 * 4);
+        return slice;
+    }
+
+    /**
+     * Quantizes the first {@code length} values of {@code in} to [-127, 127].
+     *
+     * @return the scale of the quantized values, 0 if all values are 0
+     */
+    private static float quantize(float[] in, int length, byte[] out) {
+        float max = 0;
+        for (int i = 0; i < length; i++) {
+            float abs = Math.abs(in[i]);
+            if (abs > max) {
+                max = abs;
+            }
+        }
+        if (max == 0) {
+            return 0;
+        }
+        float invScale = 127 / max;
+        for (int i = 0; i < length; i++) {
+            out[i] = (byte) Math.round(in[i] * invScale);
+        }
+        return max / 127;
+    }
+
+    @Override
+    public void classify(float[] pixels, float[] outputs) {
+        classify(pixels, 0, outputs, 0);
+    }
+
+    @Override
+    public void classify(float[] pixels, int batchSize, float[] outputs) {
+        // The layers work on one drawing at a time, a batch only saves the call overhead
+        for (int i = 0; i < batchSize; i++) {
+            classify(pixels, i * inputLength, outputs, i * OUTPUT_SIZE);
+        }
+    }
+
+    private void classify(float[] pixels, int pixelOffset, float[] outputs, int outputOffset) {
+        float[] in = mActivationA;
+        float[] out = mActivationB;
+        System.arraycopy(pixels, pixelOffset, in, 0, inputLength);
+        for (Layer layer : layers) {
+            layer.forward(in, out);
+            float[] swap = in;
+            in = out;
+            out = swap;
+        }
+        System.arraycopy(in, 0, outputs, outputOffset, OUTPUT_SIZE);
+    }
+
+    @Override
+    public void close() {
+        // The weights are owned by the buffer passed to the constructor
+    }
+
+    private abstract static class Layer {
+        final int outWidth;
+        final int outHeight;
+        final int outChannels;
+
+        Layer(int outWidth, int outHeight, int outChannels) {
+            this.outWidth = outWidth;
+            this.outHeight = outHeight;
+            this.outChannels = outChannels;
+        }
+
+        abstract void forward(float[] in, float[] out);
+    }
+
+    private static class ConvLayer extends Layer {
+        private final int inWidth;
+        private final int inHeight;
+        private final int inChannels;
+        private final int kernelSize;
+        private final FloatBuffer weights;
+        private final FloatBuffer bias;
+
+        ConvLayer(int inWidth, int inHeight, int inChannels, int outChannels, int kernelSize, FloatBuffer weights, FloatBuffer bias) {
+            super(inWidth, inHeight, outChannels);
+            this.inWidth = inWidth;
+            this.inHeight = inHeight;
+            this.inChannels = inChannels;
+            this.kernelSize = kernelSize;
+            this.weights = weights;
+            this.bias = bias;
+        }
+
+        @Override
+        void forward(float[] in, float[] out) {
+            int padding = (kernelSize - 1) / 2;
+            for (int oy = 0; oy < outHeight; oy++) {
+                for (int ox = 0; ox < outWidth; ox++) {
+                    int outBase = (oy * outWidth + ox) * outChannels;
+                    for (int oc = 0; oc < outChannels; oc++) {
+                        float sum = bias.get(oc);
+                        for (int ky = 0; ky < kernelSize; ky++) {
+                            int iy = oy + ky - padding;
+                            if ((iy < 0) || (iy >= inHeight)) {
+                                continue;
+                            }
+                            for (int kx = 0; kx < kernelSize; kx++) {
+                                int ix = ox + kx - padding;
+                                if ((ix < 0) || (ix >= inWidth)) {
+                                    continue;
+                                }
+                                // Input channels are contiguous in both the input and the weights
+                                int inBase = (iy * inWidth + ix) * inChannels;
+                                int weightBase = ((oc * kernelSize + ky) * kernelSize + kx) * inChannels;
+                                for (int ic = 0; ic < inChannels; ic++) {
+                                    sum += in[inBase + ic] * weights.get(weightBase + ic);
+                                }
+                            }
+                        }
+                        out[outBase + oc] = sum;
+                    }
+                }
+            }
+        }
+    }
+
+    private static class QuantizedConvLayer extends Layer {
+        private final int inWidth;
+        private final int inHeight;
+        private final int inChannels;
+        private final int kernelSize;
+        private final float weightScale;
+        private final ByteBuffer weights;
+        private final FloatBuffer bias;
+        private final byte[] mQuantizedInput;
+        // The weights of one output channel, read from the buffer in one bulk get
+        private final byte[] mKernel;
+
+        QuantizedConvLayer(int inWidth, int inHeight, int inChannels, int outChannels, int kernelSize, float weightScale, ByteBuffer weights, FloatBuffer bias) {
+            super(inWidth, inHeight, outChannels);
+            this.inWidth = inWidth;
+            this.inHeight = inHeight;
+            this.inChannels = inChannels;
+            this.kernelSize = kernelSize;
+            this.weightScale = weightScale;
+            this.weights = weights;
+            this.bias = bias;
+            mQuantizedInput = new byte[inWidth * inHeight * inChannels];
+            mKernel = new byte[kernelSize * kernelSize * inChannels];
+        }
+
+        @Override
+        void forward(float[] in, float[] out) {
+            byte[] quantized = mQuantizedInput;
+            byte[] kernel = mKernel;
+            float scale = quantize(in, quantized.length, quantized) * weightScale;
+            int padding = (kernelSize - 1) / 2;
+            // One output channel at a time, so that its weights are read from the buffer once
+            // and the inner loop only indexes arrays
+            for (int oc = 0; oc < outChannels; oc++) {
+                weights.position(oc * kernel.length);
+                weights.get(kernel);
+                float channelBias = bias.get(oc);
+                for (int oy = 0; oy < outHeight; oy++) {
+                    for (int ox = 0; ox < outWidth; ox++) {
+                        int sum = 0;
+                        for (int ky = 0; ky < kernelSize; ky++) {
+                            int iy = oy + ky - padding;
+                            if ((iy < 0) || (iy >= inHeight)) {
+                                continue;
+                            }
+                            for (int kx = 0; kx < kernelSize; kx++) {
+                                int ix = ox + kx - padding;
+                                if ((ix < 0) || (ix >= inWidth)) {
+                                    continue;
+                                }
+                                int inBase = (iy * inWidth + ix) * inChannels;
+                                int weightBase = (ky * kernelSize + kx) * inChannels;
+                                for (int ic = 0; ic < inChannels; ic++) {
+                                    sum += quantized[inBase + ic] * kernel[weightBase + ic];
+                                }
+                            }
+                        }
+                        out[(oy * outWidth + ox) * outChannels + oc] = sum * scale + channelBias;
+                    }
+                }
+            }
+        }
+    }
+
+    private static class MaxPoolLayer extends Layer {
+        private final int inWidth;
+        private final int inHeight;
+        private final int size;
+
+        MaxPoolLayer(int inWidth, int inHeight, int channels, int size) {
+            super((inWidth + size - 1) / size, (inHeight + size - 1) / size, channels);
+            this.inWidth = inWidth;
+            this.inHeight = inHeight;
+            this.size = size;
+        }
+
+        @Override
+        void forward(float[] in, float[] out) {
+            for (int oy = 0; oy < outHeight; oy++) {
+                for (int ox = 0; ox < outWidth; ox++) {
+                    int outBase = (oy * outWidth + ox) * outChannels;
+                    for (int c = 0; c < outChannels; c++) {
+                        out[outBase + c] = Float.NEGATIVE_INFINITY;
+                    }
+                    for (int iy = oy * size; iy < Math.min(inHeight, (oy + 1) * size); iy++) {
+                        for (int ix = ox * size; ix < Math.min(inWidth, (ox + 1) * size); ix++) {
+                            int inBase = (iy * inWidth + ix) * outChannels;
+                            for (int c = 0; c < outChannels; c++) {
+                                if (in[inBase + c] > out[outBase + c]) {
+                                    out[outBase + c] = in[inBase + c];
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static class DenseLayer extends Layer {
+        private final int inSize;
+        private final FloatBuffer weights;
+        private final FloatBuffer bias;
+
+        DenseLayer(int inSize, int outSize, FloatBuffer weights, FloatBuffer bias) {
+            super(1, 1, outSize);
+            this.inSize = inSize;
+            this.weights = weights;
+            this.bias = bias;
+        }
+
+        @Override
+        void forward(float[] in, float[] out) {
+            // Each output is the dot product of the input with one contiguous row of weights
+            for (int o = 0; o < outChannels; o++) {
+                int rowBase = o * inSize;
+                float sum = bias.get(o);
+                for (int i = 0; i < inSize; i++) {
+                    sum += in[i] * weights.get(rowBase + i);
+                }
+                out[o] = sum;
+            }
+        }
+    }
+
+    private static class QuantizedDenseLayer extends Layer {
+        private final int inSize;
+        private final float weightScale;
+        private final ByteBuffer weights;
+        private final FloatBuffer bias;
+        private final byte[] mQuantizedInput;
+        // One row of weights, read from the buffer in one bulk get
+        private final byte[] mRow;
+
+        QuantizedDenseLayer(int inSize, int outSize, float weightScale, ByteBuffer weights, FloatBuffer bias) {
+            super(1, 1, outSize);
+            this.inSize = inSize;
+            this.weightScale = weightScale;
+            this.weights = weights;
+            this.bias = bias;
+            mQuantizedInput = new byte[inSize];
+            mRow = new byte[inSize];
+        }
+
+        @Override
+        void forward(float[] in, float[] out) {
+            byte[] quantized = mQuantizedInput;
+            byte[] row = mRow;
+            float scale = quantize(in, inSize, quantized) * weightScale;
+            weights.position(0);
+            for (int o = 0; o < outChannels; o++) {
+                // The rows are contiguous, each get continues where the last one stopped
+                weights.get(row);
+                int sum = 0;
+                for (int i = 0; i < inSize; i++) {
+                    sum += quantized[i] * row[i];
+                }
+                out[o] = sum * scale + bias.get(o);
+            }
+        }
+    }
+
+    private static class ReluLayer extends Layer {
+
+        ReluLayer(int width, int height, int channels) {
+            super(width, height, channels);
+        }
+
+        @Override
+        void forward(float[] in, float[] out) {
+            int length = outWidth * outHeight * outChannels;
+            for (int i = 0; i < length; i++) {
+                out[i] = (in[i] > 0) ? in[i] : 0;
+            }
+        }
+    }
+
+    private static class SoftmaxLayer extends Layer {
+
+        SoftmaxLayer(int width, int height, int channels) {
+            super(width, height, channels);
+        }
+
+        @Override
+        void forward(float[] in, float[] out) {
+            int length = outWidth * outHeight * outChannels;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < length; i++) {
+                max = Math.max(max, in[i]);
+            }
+            float sum = 0;
+            for (int i = 0; i < length; i++) {
+                out[i] = (float) Math.exp(in[i] - max);
+                sum += out[i];
+            }
+            for (int i = 0; i < length; i++) {
+                out[i] /= sum;
+            }
+        }
+    }
+}
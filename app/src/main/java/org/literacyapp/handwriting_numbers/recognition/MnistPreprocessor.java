@@ -0,0 +1,196 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+/**
+ * Normalizes a rasterized drawing the same way as the MNIST digits which the model was trained
+ * on: the drawing is cropped to its bounding box, scaled into a 20x20 box while preserving the
+ * aspect ratio and placed in the 28x28 output so that its center of mass is in the middle.
+ * <p />
+ *
+ * Small drawings are scaled up at most as far as one which spans {@link #MIN_EXTENT_RATIO} of
+ * the source, so that a tap or a short scribble stays a dot instead of filling the box like a
+ * digit.
+ * <p />
+ *
+ * All buffers are allocated up front, {@link #process(float[], float[])} does not allocate. An
+ * instance is not thread-safe.
+ */
+public class MnistPreprocessor {
+
+    public static final int OUTPUT_SIZE = 28;
+    public static final int BOX_SIZE = 20;
+    public static final float MIN_EXTENT_RATIO = 0.25f;
+
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final float maxScale;
+
+    // The scaled down drawing, before it is placed inside the output
+    private final float[] mBox = new float[BOX_SIZE * BOX_SIZE];
+
+    private long mCallCount;
+    private long mTotalNanos;
+    private long mLastNanos;
+    private long mMaxNanos;
+
+    public MnistPreprocessor(int sourceWidth, int sourceHeight) {
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        maxScale = BOX_SIZE / (MIN_EXTENT_RATIO * Math.max(sourceWidth, sourceHeight));
+    }
+
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    /**
+     * @param source  grayscale raster of sourceWidth * sourceHeight values, 0 is blank
+     * @param out     receives the 28x28 model input
+     */
+    public void process(float[] source, float[] out) {
+        long startTime = System.nanoTime();
+
+        for (int i = 0; i < OUTPUT_SIZE * OUTPUT_SIZE; i++) {
+            out[i] = 0;
+        }
+
+        // Bounding box
+        int minX = sourceWidth;
+        int minY = sourceHeight;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < sourceHeight; y++) {
+            int row = y * sourceWidth;
+            for (int x = 0; x < sourceWidth; x++) {
+                if (source[row + x] > 0) {
+                    if (x < minX) {
+                        minX = x;
+                    }
+                    if (x > maxX) {
+                        maxX = x;
+                    }
+                    if (y < minY) {
+                        minY = y;
+                    }
+                    maxY = y;
+                }
+            }
+        }
+
+        if (maxX >= 0) {
+            int width = maxX - minX + 1;
+            int height = maxY - minY + 1;
+
+            // Preserve the aspect ratio, the longer side fills the box unless the drawing is too small
+            float scale = Math.min(maxScale, BOX_SIZE / (float) Math.max(width, height));
+            int boxWidth = Math.max(1, Math.min(BOX_SIZE, Math.round(width * scale)));
+            int boxHeight = Math.max(1, Math.min(BOX_SIZE, Math.round(height * scale)));
+
+            resample(source, minX, minY, width, height, boxWidth, boxHeight);
+            place(boxWidth, boxHeight, out);
+        }
+
+        long duration = System.nanoTime() - startTime;
+        mCallCount++;
+        mTotalNanos += duration;
+        mLastNanos = duration;
+        if (duration > mMaxNanos) {
+            mMaxNanos = duration;
+        }
+    }
+
+    /**
+     * Area-averages the bounding box of the source into the top left boxWidth * boxHeight
+     * values of {@link #mBox}.
+     */
+    private void resample(float[] source, int minX, int minY, int width, int height, int boxWidth, int boxHeight) {
+        float stepX = width / (float) boxWidth;
+        float stepY = height / (float) boxHeight;
+        float area = stepX * stepY;
+
+        for (int by = 0; by < boxHeight; by++) {
+            float y0 = minY + by * stepY;
+            float y1 = y0 + stepY;
+            int firstY = (int) y0;
+            int lastY = Math.min(minY + height, (int) Math.ceil(y1)) - 1;
+
+            for (int bx = 0; bx < boxWidth; bx++) {
+                float x0 = minX + bx * stepX;
+                float x1 = x0 + stepX;
+                int firstX = (int) x0;
+                int lastX = Math.min(minX + width, (int) Math.ceil(x1)) - 1;
+
+                float sum = 0;
+                for (int sy = firstY; sy <= lastY; sy++) {
+                    float weightY = Math.min(y1, sy + 1) - Math.max(y0, sy);
+                    int row = sy * sourceWidth;
+                    for (int sx = firstX; sx <= lastX; sx++) {
+                        float weightX = Math.min(x1, sx + 1) - Math.max(x0, sx);
+                        sum += source[row + sx] * weightX * weightY;
+                    }
+                }
+                mBox[by * BOX_SIZE + bx] = sum / area;
+            }
+        }
+    }
+
+    /**
+     * Copies the scaled drawing into the output so that its center of mass is in the middle.
+     */
+    private void place(int boxWidth, int boxHeight, float[] out) {
+        float mass = 0;
+        float massX = 0;
+        float massY = 0;
+        for (int y = 0; y < boxHeight; y++) {
+            for (int x = 0; x < boxWidth; x++) {
+                float value = mBox[y * BOX_SIZE + x];
+                mass += value;
+                massX += value * (x + 0.5f);
+                massY += value * (y + 0.5f);
+            }
+        }
+
+        int offsetX;
+        int offsetY;
+        if (mass > 0) {
+            offsetX = Math.round(OUTPUT_SIZE / 2f - massX / mass);
+            offsetY = Math.round(OUTPUT_SIZE / 2f - massY / mass);
+        } else {
+            offsetX = (OUTPUT_SIZE - boxWidth) / 2;
+            offsetY = (OUTPUT_SIZE - boxHeight) / 2;
+        }
+        // Keep the whole drawing inside the output
+        offsetX = Math.max(0, Math.min(OUTPUT_SIZE - boxWidth, offsetX));
+        offsetY = Math.max(0, Math.min(OUTPUT_SIZE - boxHeight, offsetY));
+
+        for (int y = 0; y < boxHeight; y++) {
+            System.arraycopy(mBox, y * BOX_SIZE, out, (y + offsetY) * OUTPUT_SIZE + offsetX, boxWidth);
+        }
+    }
+
+    public long getCallCount() {
+        return mCallCount;
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    public long getLastNanos() {
+        return mLastNanos;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    public void resetCounters() {
+        mCallCount = 0;
+        mTotalNanos = 0;
+        mLastNanos = 0;
+        mMaxNanos = 0;
+    }
+}
@@ -0,0 +1,43 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+/**
+ * Converts bitmap pixels into model input values.
+ */
+public final class PixelConversion {
+
+    private PixelConversion() {
+    }
+
+    /**
+     * Converts ARGB pixels of black ink on white into grayscale input values. Only the blue
+     * channel is read, since all channels are the same.
+     *
+     * @param pixels  ARGB pixels, as returned by {@code Bitmap.getPixels}
+     * @param out     receives 0 for white and 255 for black pixels
+     */
+    public static void argbToInput(int[] pixels, float[] out) {
+        for (int i = 0; i < pixels.length; ++i) {
+            // Set 0 for white and 255 for black pixel
+            int pix = pixels[i];
+            int b = pix & 0xff;
+            out[i] = 0xff - b;
+        }
+    }
+
+    /**
+     * Copies the ink coverage of an ALPHA_8 bitmap into input values, which use the same range.
+     *
+     * @param alpha     one byte per pixel, as copied by {@code Bitmap.copyPixelsToBuffer}
+     * @param rowBytes  bytes per row, at least the width
+     * @param out       receives width * height values, 0 for no ink and 255 for full coverage
+     */
+    public static void alphaToInput(byte[] alpha, int rowBytes, int width, int height, float[] out) {
+        for (int y = 0; y < height; y++) {
+            int row = y * rowBytes;
+            int outRow = y * width;
+            for (int x = 0; x < width; x++) {
+                out[outRow + x] = alpha[row + x] & 0xff;
+            }
+        }
+    }
+}
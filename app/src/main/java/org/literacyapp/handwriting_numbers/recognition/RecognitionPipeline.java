@@ -0,0 +1,100 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+
+/**
+ * The steps around the classifier: turns the strokes of a drawing into the model input and the
+ * classifier outputs into a number. Used by
+ * {@link org.literacyapp.handwriting_numbers.view.DrawViewOnTouchListener} and by the
+ * ReplayEvaluator of the tools module, so that a replay evaluates exactly what the app does.
+ * <p />
+ *
+ * A number with more than one digit is split by the {@link StrokeSegmenter} and every digit is
+ * rasterized and preprocessed on its own, so that its outputs can be classified with one batch.
+ * A one-digit number, or a drawing which falls apart into too many digits, is handled as a
+ * whole.
+ * <p />
+ *
+ * All buffers are allocated up front, {@link #prepare(DrawModel, int)} does not allocate. An
+ * instance is not thread-safe.
+ */
+public class RecognitionPipeline {
+
+    // Width of the pen in model coordinates
+    public static final float STROKE_WIDTH = 20;
+
+    // The strokes are rasterized at a higher resolution, so that small drawings keep their detail
+    // when they are scaled by the preprocessor
+    public static final int RASTER_SIZE = 112;
+
+    // Most digits of a number which are classified one by one
+    public static final int MAX_DIGITS = 4;
+
+    public static final int INPUT_LENGTH = DigitClassifier.INPUT_SIZE * DigitClassifier.INPUT_SIZE;
+
+    private final float threshold;
+
+    private final StrokeRasterizer rasterizer = new StrokeRasterizer(RASTER_SIZE, RASTER_SIZE, STROKE_WIDTH);
+    private final MnistPreprocessor preprocessor = new MnistPreprocessor(RASTER_SIZE, RASTER_SIZE);
+    private final StrokeSegmenter segmenter = new StrokeSegmenter(STROKE_WIDTH, StrokeSegmenter.DEFAULT_GAP_RATIO);
+    private final float[] raster = new float[RASTER_SIZE * RASTER_SIZE];
+    // The model input of every digit, one after another
+    private final float[] pixels = new float[MAX_DIGITS * INPUT_LENGTH];
+    private final float[] digitPixels = new float[INPUT_LENGTH];
+
+    /**
+     * @param threshold  score a digit needs to be recognized, e.g. {@link DigitDecision#THRESHOLD}
+     */
+    public RecognitionPipeline(float threshold) {
+        this.threshold = threshold;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Rasterizes and preprocesses the drawing into {@link #getPixels()}.
+     *
+     * @param numberToWrite  the drawing is only segmented if this has more than one digit
+     * @return the number of drawings in {@link #getPixels()}, from 1 to {@link #MAX_DIGITS}
+     */
+    public int prepare(DrawModel model, int numberToWrite) {
+        int digitCount = 1;
+        if (numberToWrite >= 10) {
+            digitCount = segmenter.segment(model);
+        }
+        if ((digitCount > 1) && (digitCount <= MAX_DIGITS)) {
+            for (int digit = 0; digit < digitCount; digit++) {
+                int start = segmenter.getDigitStart(digit);
+                rasterizer.rasterize(model, segmenter.getLines(), start, segmenter.getDigitEnd(digit) - start, raster);
+                preprocessor.process(raster, digitPixels);
+                System.arraycopy(digitPixels, 0, pixels, digit * INPUT_LENGTH, INPUT_LENGTH);
+            }
+            return digitCount;
+        }
+        // Too many digits can never match, classify the drawing as a whole
+        rasterizer.rasterize(model, raster);
+        preprocessor.process(raster, pixels);
+        return 1;
+    }
+
+    /**
+     * The model input of the last {@link #prepare(DrawModel, int)}, one drawing after another.
+     */
+    public float[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @param outputs  {@link DigitClassifier#OUTPUT_SIZE} scores for each of the digitCount drawings
+     * @return the recognized number, or {@link DigitDecision#NONE}
+     */
+    public int decide(float[] outputs, int digitCount) {
+        return DigitDecision.recognizeNumber(outputs, digitCount, DigitClassifier.OUTPUT_SIZE, threshold);
+    }
+
+    public MnistPreprocessor getPreprocessor() {
+        return preprocessor;
+    }
+}
@@ -0,0 +1,158 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+
+/**
+ * Renders the strokes of a {@link DrawModel} directly into a grayscale float tensor, without
+ * going through an Android bitmap.
+ * <p />
+ *
+ * Every segment is treated as a capsule with the width of the pen. The coverage of a pixel is
+ * estimated from the distance between the pixel center and the segment, which gives
+ * anti-aliased edges. Overlapping segments are combined with max, so that drawing over the same
+ * spot twice does not make it darker. The output uses 0 for blank and 255 for ink, like
+ * {@link org.literacyapp.handwriting_numbers.view.DrawView#getPixelData(int)}.
+ */
+public class StrokeRasterizer {
+
+    public static final float INK = 255f;
+
+    private final int width;
+    private final int height;
+    private final float strokeWidth;
+
+    /**
+     * @param width        width of the output in pixels
+     * @param height       height of the output in pixels
+     * @param strokeWidth  width of the pen in model coordinates
+     */
+    public StrokeRasterizer(int width, int height, float strokeWidth) {
+        this.width = width;
+        this.height = height;
+        this.strokeWidth = strokeWidth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Rasterizes all lines of the model into {@code out}, which must hold width * height values.
+     */
+    public void rasterize(DrawModel model, float[] out) {
+        rasterize(model, 0, model.getLineSize(), out);
+    }
+
+    /**
+     * Rasterizes the lines {@code startLine} (inclusive) to {@code endLine} (exclusive).
+     */
+    public void rasterize(DrawModel model, int startLine, int endLine, float[] out) {
+        float halfWidth = begin(model, out);
+        for (int i = startLine; i < endLine; i++) {
+            drawLine(model, i, halfWidth, out);
+        }
+    }
+
+    /**
+     * Rasterizes the lines whose indices are at {@code offset} to {@code offset + count} in
+     * {@code lines}, e.g. one digit of a {@link StrokeSegmenter}.
+     */
+    public void rasterize(DrawModel model, int[] lines, int offset, int count, float[] out) {
+        float halfWidth = begin(model, out);
+        for (int i = offset; i < offset + count; i++) {
+            drawLine(model, lines[i], halfWidth, out);
+        }
+    }
+
+    /**
+     * Clears the output.
+     *
+     * @return half the width of the pen in pixels
+     */
+    private float begin(DrawModel model, float[] out) {
+        if (out.length < width * height) {
+            throw new IllegalArgumentException("Output has " + out.length + " values, expected " + (width * height));
+        }
+        for (int i = 0; i < width * height; i++) {
+            out[i] = 0;
+        }
+
+        float scaleX = width / (float) model.getWidth();
+        float scaleY = height / (float) model.getHeight();
+        return strokeWidth * Math.min(scaleX, scaleY) / 2;
+    }
+
+    private void drawLine(DrawModel model, int line, float halfWidth, float[] out) {
+        int start = model.getLineStart(line);
+        int end = model.getLineEnd(line);
+        if (end - start < 1) {
+            return;
+        }
+        float scaleX = width / (float) model.getWidth();
+        float scaleY = height / (float) model.getHeight();
+        float[] points = model.getPoints();
+        float lastX = points[start * 2] * scaleX;
+        float lastY = points[start * 2 + 1] * scaleY;
+
+        // The first segment has zero length, it draws the dot of a single tap
+        for (int j = start; j < end; j++) {
+            float x = points[j * 2] * scaleX;
+            float y = points[j * 2 + 1] * scaleY;
+            drawSegment(lastX, lastY, x, y, halfWidth, out);
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    private void drawSegment(float x0, float y0, float x1, float y1, float halfWidth, float[] out) {
+        // Pixels further away than half the width plus half a pixel are not covered at all
+        float reach = halfWidth + 0.5f;
+        int minX = Math.max(0, (int) Math.floor(Math.min(x0, x1) - reach));
+        int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(x0, x1) + reach));
+        int minY = Math.max(0, (int) Math.floor(Math.min(y0, y1) - reach));
+        int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(y0, y1) + reach));
+        if ((minX > maxX) || (minY > maxY)) {
+            return;
+        }
+
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float lengthSquared = dx * dx + dy * dy;
+        float invLengthSquared = (lengthSquared > 0) ? 1f / lengthSquared : 0f;
+
+        for (int py = minY; py <= maxY; py++) {
+            float cy = py + 0.5f;
+            int row = py * width;
+            for (int px = minX; px <= maxX; px++) {
+                float cx = px + 0.5f;
+
+                // Closest point on the segment
+                float t = ((cx - x0) * dx + (cy - y0) * dy) * invLengthSquared;
+                if (t < 0) {
+                    t = 0;
+                } else if (t > 1) {
+                    t = 1;
+                }
+                float ex = cx - (x0 + t * dx);
+                float ey = cy - (y0 + t * dy);
+                float distance = (float) Math.sqrt(ex * ex + ey * ey);
+
+                float coverage = reach - distance;
+                if (coverage <= 0) {
+                    continue;
+                }
+                if (coverage > 1) {
+                    coverage = 1;
+                }
+                float value = coverage * INK;
+                if (value > out[row + px]) {
+                    out[row + px] = value;
+                }
+            }
+        }
+    }
+}
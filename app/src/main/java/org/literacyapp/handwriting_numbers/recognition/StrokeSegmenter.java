@@ -0,0 +1,145 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+
+/**
+ * Splits the strokes of a multi-digit number into one group per digit, from left to right.
+ * <p />
+ *
+ * Digits are assumed to be written next to each other. The strokes are sorted by the left edge
+ * of their bounding box and a stroke joins the group to its left if it overlaps it horizontally
+ * or the gap between them is smaller than the minimum gap, otherwise it starts a new digit. The
+ * order in which the strokes were drawn does not matter, e.g. the bar of a 4 may be added after
+ * the next digit. The minimum gap grows with the height of the drawing, since large digits are
+ * written further apart.
+ * <p />
+ *
+ * The groups are lists of line indices, which can be rasterized with
+ * {@link StrokeRasterizer#rasterize(DrawModel, int[], int, int, float[])}. Not thread-safe, the
+ * buffers are reused by every call.
+ */
+public class StrokeSegmenter {
+
+    public static final float DEFAULT_GAP_RATIO = 0.1f;
+
+    private final float strokeWidth;
+    private final float gapRatio;
+
+    private int mLineCount;
+    // Line indices ordered by digit, the lines of digit i are at mDigitStarts[i] to mDigitStarts[i + 1]
+    private int[] mLines = new int[16];
+    private int[] mDigitStarts = new int[17];
+    private int mDigitCount;
+
+    // Bounding box of every line, in model coordinates
+    private float[] mMinX = new float[16];
+    private float[] mMaxX = new float[16];
+
+    /**
+     * @param strokeWidth  width of the pen in model coordinates, the ink of two strokes touches if
+     *                     their lines are closer than this
+     * @param gapRatio     additional gap between two digits, relative to the height of the drawing
+     */
+    public StrokeSegmenter(float strokeWidth, float gapRatio) {
+        this.strokeWidth = strokeWidth;
+        this.gapRatio = gapRatio;
+    }
+
+    /**
+     * Groups the non-empty lines of the model into digits.
+     *
+     * @return the number of digits, 0 if nothing has been drawn
+     */
+    public int segment(DrawModel model) {
+        int lineSize = model.getLineSize();
+        ensureCapacity(lineSize);
+
+        float[] points = model.getPoints();
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        mLineCount = 0;
+        for (int i = 0; i < lineSize; i++) {
+            int start = model.getLineStart(i);
+            int end = model.getLineEnd(i);
+            if (end <= start) {
+                continue;
+            }
+            float lineMinX = Float.MAX_VALUE;
+            float lineMaxX = -Float.MAX_VALUE;
+            for (int j = start; j < end; j++) {
+                float x = points[j * 2];
+                float y = points[j * 2 + 1];
+                lineMinX = Math.min(lineMinX, x);
+                lineMaxX = Math.max(lineMaxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+
+            // Insertion sort by the left edge, there are only a few lines
+            int k = mLineCount;
+            while ((k > 0) && (mMinX[k - 1] > lineMinX)) {
+                mLines[k] = mLines[k - 1];
+                mMinX[k] = mMinX[k - 1];
+                mMaxX[k] = mMaxX[k - 1];
+                k--;
+            }
+            mLines[k] = i;
+            mMinX[k] = lineMinX;
+            mMaxX[k] = lineMaxX;
+            mLineCount++;
+        }
+
+        mDigitCount = 0;
+        if (mLineCount == 0) {
+            return 0;
+        }
+        float minGap = strokeWidth + gapRatio * (maxY - minY);
+        float digitMaxX = -Float.MAX_VALUE;
+        for (int k = 0; k < mLineCount; k++) {
+            if ((mDigitCount == 0) || (mMinX[k] - digitMaxX >= minGap)) {
+                mDigitStarts[mDigitCount++] = k;
+                digitMaxX = mMaxX[k];
+            } else {
+                digitMaxX = Math.max(digitMaxX, mMaxX[k]);
+            }
+        }
+        mDigitStarts[mDigitCount] = mLineCount;
+        return mDigitCount;
+    }
+
+    public int getDigitCount() {
+        return mDigitCount;
+    }
+
+    /**
+     * Line indices of all digits, see {@link #getDigitStart(int)} and {@link #getDigitEnd(int)}.
+     * Only valid until the next call of {@link #segment(DrawModel)}.
+     */
+    public int[] getLines() {
+        return mLines;
+    }
+
+    /**
+     * @return the offset of the first line of the digit in {@link #getLines()}
+     */
+    public int getDigitStart(int digit) {
+        return mDigitStarts[digit];
+    }
+
+    /**
+     * @return the offset after the last line of the digit in {@link #getLines()}
+     */
+    public int getDigitEnd(int digit) {
+        return mDigitStarts[digit + 1];
+    }
+
+    private void ensureCapacity(int lineSize) {
+        if (mLines.length < lineSize) {
+            int capacity = Math.max(lineSize, mLines.length * 2);
+            mLines = new int[capacity];
+            mDigitStarts = new int[capacity + 1];
+            mMinX = new float[capacity];
+            mMaxX = new float[capacity];
+        }
+    }
+}
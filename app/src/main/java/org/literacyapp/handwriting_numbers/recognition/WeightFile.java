@@ -0,0 +1,45 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+/**
+ * Constants of the weight file format read by {@link JavaDigitClassifier} and written by
+ * {@link WeightFileWriter}.
+ * <p />
+ *
+ * All values are little-endian 32 bit ints or floats, so the file can be memory-mapped and the
+ * weights read in place:
+ * <pre>
+ * int magic, int version
+ * int inputWidth, int inputHeight, int inputChannels
+ * int layerCount
+ * layerCount times:
+ *   int type
+ *   CONV:     int outChannels, int kernelSize, float weights[out][ky][kx][in], float bias[out]
+ *             (stride 1, zero padding that keeps the size)
+ *   MAX_POOL: int size (stride is the same as the size)
+ *   DENSE:    int outSize, float weights[out][in], float bias[out]
+ *   RELU, SOFTMAX: no parameters
+ *   CONV_Q8:  like CONV, but float weightScale, byte weights[out][ky][kx][in], padded to a
+ *             multiple of 4 bytes, before the float bias
+ *   DENSE_Q8: like DENSE, but float weightScale, byte weights[out][in], padded to a multiple
+ *             of 4 bytes, before the float bias
+ * </pre>
+ * Quantized weights are symmetric: the real value of a weight is weight * weightScale.
+ * Activations are stored height, width, channels, like the NHWC tensors of TensorFlow.
+ */
+public final class WeightFile {
+
+    // Written little-endian, so a weight file starts with the bytes "WHNW"
+    public static final int MAGIC = 0x574e4857;
+    public static final int VERSION = 1;
+
+    public static final int LAYER_CONV = 1;
+    public static final int LAYER_MAX_POOL = 2;
+    public static final int LAYER_DENSE = 3;
+    public static final int LAYER_RELU = 4;
+    public static final int LAYER_SOFTMAX = 5;
+    public static final int LAYER_CONV_Q8 = 6;
+    public static final int LAYER_DENSE_Q8 = 7;
+
+    private WeightFile() {
+    }
+}
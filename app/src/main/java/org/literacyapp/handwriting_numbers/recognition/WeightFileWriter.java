@@ -0,0 +1,188 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a weight file layer by layer, see {@link WeightFile} for the format.
+ */
+public class WeightFileWriter {
+
+    private final int inputWidth;
+    private final int inputHeight;
+    private final int inputChannels;
+
+    // Shape of the output of the last layer
+    private int width;
+    private int height;
+    private int channels;
+
+    private final List<ByteBuffer> layers = new ArrayList<>();
+
+    public WeightFileWriter(int inputWidth, int inputHeight, int inputChannels) {
+        this.inputWidth = inputWidth;
+        this.inputHeight = inputHeight;
+        this.inputChannels = inputChannels;
+        this.width = inputWidth;
+        this.height = inputHeight;
+        this.channels = inputChannels;
+    }
+
+    /**
+     * @param weights  outChannels * kernelSize * kernelSize * inChannels values, ordered
+     *                 [out][ky][kx][in]
+     */
+    public WeightFileWriter conv(int outChannels, int kernelSize, float[] weights, float[] bias) {
+        checkLength("weights", weights, outChannels * kernelSize * kernelSize * channels);
+        checkLength("bias", bias, outChannels);
+        ByteBuffer layer = allocate(3 + weights.length + bias.length);
+        layer.putInt(WeightFile.LAYER_CONV);
+        layer.putInt(outChannels);
+        layer.putInt(kernelSize);
+        putFloats(layer, weights);
+        putFloats(layer, bias);
+        layers.add(layer);
+        channels = outChannels;
+        return this;
+    }
+
+    /**
+     * Same as {@link #conv(int, int, float[], float[])}, with the weights quantized to int8.
+     */
+    public WeightFileWriter quantizedConv(int outChannels, int kernelSize, float[] weights, float[] bias) {
+        checkLength("weights", weights, outChannels * kernelSize * kernelSize * channels);
+        checkLength("bias", bias, outChannels);
+        int paddedLength = (weights.length + 3) / 4;
+        ByteBuffer layer = allocate(4 + paddedLength + bias.length);
+        layer.putInt(WeightFile.LAYER_CONV_Q8);
+        layer.putInt(outChannels);
+        layer.putInt(kernelSize);
+        putQuantized(layer, weights, paddedLength * 4);
+        putFloats(layer, bias);
+        layers.add(layer);
+        channels = outChannels;
+        return this;
+    }
+
+    public WeightFileWriter maxPool(int size) {
+        ByteBuffer layer = allocate(2);
+        layer.putInt(WeightFile.LAYER_MAX_POOL);
+        layer.putInt(size);
+        layers.add(layer);
+        width = (width + size - 1) / size;
+        height = (height + size - 1) / size;
+        return this;
+    }
+
+    /**
+     * @param weights  outSize * inSize values, ordered [out][in]
+     */
+    public WeightFileWriter dense(int outSize, float[] weights, float[] bias) {
+        checkLength("weights", weights, outSize * width * height * channels);
+        checkLength("bias", bias, outSize);
+        ByteBuffer layer = allocate(2 + weights.length + bias.length);
+        layer.putInt(WeightFile.LAYER_DENSE);
+        layer.putInt(outSize);
+        putFloats(layer, weights);
+        putFloats(layer, bias);
+        layers.add(layer);
+        width = 1;
+        height = 1;
+        channels = outSize;
+        return this;
+    }
+
+    /**
+     * Same as {@link #dense(int, float[], float[])}, with the weights quantized to int8.
+     */
+    public WeightFileWriter quantizedDense(int outSize, float[] weights, float[] bias) {
+        checkLength("weights", weights, outSize * width * height * channels);
+        checkLength("bias", bias, outSize);
+        int paddedLength = (weights.length + 3) / 4;
+        ByteBuffer layer = allocate(3 + paddedLength + bias.length);
+        layer.putInt(WeightFile.LAYER_DENSE_Q8);
+        layer.putInt(outSize);
+        putQuantized(layer, weights, paddedLength * 4);
+        putFloats(layer, bias);
+        layers.add(layer);
+        width = 1;
+        height = 1;
+        channels = outSize;
+        return this;
+    }
+
+    public WeightFileWriter relu() {
+        ByteBuffer layer = allocate(1);
+        layer.putInt(WeightFile.LAYER_RELU);
+        layers.add(layer);
+        return this;
+    }
+
+    public WeightFileWriter softmax() {
+        ByteBuffer layer = allocate(1);
+        layer.putInt(WeightFile.LAYER_SOFTMAX);
+        layers.add(layer);
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        int length = 6 * 4;
+        for (ByteBuffer layer : layers) {
+            length += layer.capacity();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(WeightFile.MAGIC);
+        buffer.putInt(WeightFile.VERSION);
+        buffer.putInt(inputWidth);
+        buffer.putInt(inputHeight);
+        buffer.putInt(inputChannels);
+        buffer.putInt(layers.size());
+        for (ByteBuffer layer : layers) {
+            buffer.put(layer.array());
+        }
+        return buffer.array();
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(toByteArray());
+    }
+
+    private static ByteBuffer allocate(int values) {
+        return ByteBuffer.allocate(values * 4).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putFloats(ByteBuffer buffer, float[] values) {
+        for (float value : values) {
+            buffer.putFloat(value);
+        }
+    }
+
+    /**
+     * Writes the scale followed by the weights quantized to [-127, 127] and zero padding up to
+     * paddedLength bytes.
+     */
+    private static void putQuantized(ByteBuffer buffer, float[] weights, int paddedLength) {
+        float max = 0;
+        for (float weight : weights) {
+            max = Math.max(max, Math.abs(weight));
+        }
+        float scale = (max > 0) ? max / 127 : 1;
+        buffer.putFloat(scale);
+        for (float weight : weights) {
+            buffer.put((byte) Math.max(-127, Math.min(127, Math.round(weight / scale))));
+        }
+        for (int i = weights.length; i < paddedLength; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private static void checkLength(String name, float[] values, int expected) {
+        if (values.length != expected) {
+            throw new IllegalArgumentException(name + " has " + values.length + " values, expected " + expected);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.literacyapp.handwriting_numbers.recognition.tensorflow;
+
+import android.content.res.AssetManager;
+
+import org.literacyapp.handwriting_numbers.metrics.Metrics;
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+import org.tensorflow.contrib.android.TensorFlowInferenceInterface;
+
+import java.nio.FloatBuffer;
+
+/**
+ * {@link DigitClassifier} backed by the TensorFlow graph in the assets.
+ */
+public class TensorFlowDigitClassifier implements DigitClassifier {
+
+    public static final String MODEL_FILE = "file:///android_asset/expert-graph.pb";
+
+    private static final String INPUT_NAME = "input";
+    private static final String OUTPUT_NAME = "output";
+    private static final String[] OUTPUT_NAMES = new String[]{OUTPUT_NAME};
+    // 1 channel because it's a grayscale image
+    private static final int CHANNELS = 1;
+    private static final boolean LOG_STATS = false;
+
+    private final TensorFlowInferenceInterface inferenceInterface;
+
+    public TensorFlowDigitClassifier(AssetManager assetManager) {
+        inferenceInterface = new TensorFlowInferenceInterface(assetManager, MODEL_FILE);
+    }
+
+    @Override
+    public void classify(float[] pixels, float[] outputs) {
+        long startTime = System.nanoTime();
+        inferenceInterface.feed(INPUT_NAME, pixels, 1, INPUT_SIZE, INPUT_SIZE, CHANNELS);
+        long fedTime = System.nanoTime();
+        inferenceInterface.run(OUTPUT_NAMES, LOG_STATS);
+        long ranTime = System.nanoTime();
+        inferenceInterface.fetch(OUTPUT_NAME, outputs);
+        recordSteps(startTime, fedTime, ranTime);
+    }
+
+    /**
+     * Feeds the whole batch as one (batchSize, 28, 28, 1) tensor, so that the graph runs once.
+     */
+    @Override
+    public void classify(float[] pixels, int batchSize, float[] outputs) {
+        FloatBuffer input = FloatBuffer.wrap(pixels, 0, batchSize * INPUT_SIZE * INPUT_SIZE);
+        long startTime = System.nanoTime();
+        inferenceInterface.feed(INPUT_NAME, input, batchSize, INPUT_SIZE, INPUT_SIZE, CHANNELS);
+        long fedTime = System.nanoTime();
+        inferenceInterface.run(OUTPUT_NAMES, LOG_STATS);
+        long ranTime = System.nanoTime();
+        inferenceInterface.fetch(OUTPUT_NAME, FloatBuffer.wrap(outputs, 0, batchSize * OUTPUT_SIZE));
+        recordSteps(startTime, fedTime, ranTime);
+    }
+
+    private static void recordSteps(long startTime, long fedTime, long ranTime) {
+        Metrics.CLASSIFY_FEED.record(fedTime - startTime);
+        Metrics.CLASSIFY_RUN.record(ranTime - fedTime);
+        Metrics.CLASSIFY_FETCH.recordSince(ranTime);
+    }
+
+    @Override
+    public void close() {
+        inferenceInterface.close();
+    }
+}
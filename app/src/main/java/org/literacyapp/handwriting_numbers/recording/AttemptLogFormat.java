@@ -0,0 +1,203 @@
+package org.literacyapp.handwriting_numbers.recording;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * Format of the attempt log written by {@link AttemptLogWriter} and read by
+ * {@link AttemptLogReader}.
+ * <p />
+ *
+ * The file starts with the little-endian ints magic and version, followed by the records:
+ * <pre>
+ * int length            of the body, little-endian
+ * body:
+ *   varint startTimeMillis, varint touchUpOffsetMillis, varint decisionOffsetMillis
+ *   svarint numberToWrite, svarint recognizedNumber
+ *   varint modelWidth, varint modelHeight
+ *   varint lineCount
+ *   lineCount times:
+ *     varint pointCount
+ *     pointCount times: svarint dx, svarint dy
+ *   varint outputCount, float outputs[outputCount] (little-endian)
+ * int crc32             of the body, little-endian
+ * </pre>
+ * A varint is an unsigned LEB128 number, a svarint is zigzag encoded first. Coordinates are
+ * fixed point with {@link #COORDINATE_SCALE} steps per model pixel, each one relative to the
+ * previous point of the attempt (the first one to 0), so that most of them fit in one byte.
+ * <p />
+ *
+ * A record which has not been written completely, e.g. because the app was killed, can only be
+ * the last one of the file and is ignored by the reader.
+ */
+public final class AttemptLogFormat {
+
+    public static final int MAGIC = 0x4c414848; // "HHAL"
+    public static final int VERSION = 1;
+
+    public static final int FILE_HEADER_SIZE = 8;
+    public static final int RECORD_OVERHEAD = 8;
+
+    public static final int COORDINATE_SCALE = 8;
+
+    // Larger records are treated as corruption
+    public static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private AttemptLogFormat() {
+    }
+
+    public static void writeFileHeader(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+    }
+
+    /**
+     * @return an upper bound of the encoded size of the record, including the length and the
+     * checksum
+     */
+    public static int maxRecordSize(AttemptRecord record) {
+        return RECORD_OVERHEAD + 7 * 10 + 5 + record.lineCount * 5 + record.pointCount * 2 * 5
+                + 5 + record.outputCount * 4;
+    }
+
+    /**
+     * Appends the record at the position of the buffer, which must have
+     * {@link #maxRecordSize(AttemptRecord)} bytes remaining.
+     */
+    public static void encode(AttemptRecord record, ByteBuffer buffer, CRC32 crc) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        int bodyPosition = buffer.position();
+
+        putVarint(buffer, record.startTimeMillis);
+        putVarint(buffer, record.touchUpOffsetMillis & 0xffffffffL);
+        putVarint(buffer, record.decisionOffsetMillis & 0xffffffffL);
+        putVarint(buffer, zigzag(record.numberToWrite));
+        putVarint(buffer, zigzag(record.recognizedNumber));
+        putVarint(buffer, record.modelWidth);
+        putVarint(buffer, record.modelHeight);
+
+        putVarint(buffer, record.lineCount);
+        int lastX = 0;
+        int lastY = 0;
+        for (int i = 0; i < record.lineCount; i++) {
+            int start = record.lineStarts[i];
+            int end = record.getLineEnd(i);
+            putVarint(buffer, end - start);
+            for (int p = start; p < end; p++) {
+                int x = record.coordinates[p * 2];
+                int y = record.coordinates[p * 2 + 1];
+                putVarint(buffer, zigzag(x - lastX));
+                putVarint(buffer, zigzag(y - lastY));
+                lastX = x;
+                lastY = y;
+            }
+        }
+
+        putVarint(buffer, record.outputCount);
+        for (int i = 0; i < record.outputCount; i++) {
+            buffer.putFloat(record.outputs[i]);
+        }
+
+        int bodyLength = buffer.position() - bodyPosition;
+        buffer.putInt(lengthPosition, bodyLength);
+        crc.reset();
+        if (buffer.hasArray()) {
+            crc.update(buffer.array(), buffer.arrayOffset() + bodyPosition, bodyLength);
+        } else {
+            for (int i = bodyPosition; i < bodyPosition + bodyLength; i++) {
+                crc.update(buffer.get(i));
+            }
+        }
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Decodes a record body, without the length and the checksum.
+     *
+     * @throws IOException if the body does not match its length
+     */
+    public static void decode(ByteBuffer body, AttemptRecord record) throws IOException {
+        body.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            record.clear();
+            record.startTimeMillis = getVarint(body);
+            record.touchUpOffsetMillis = (int) getVarint(body);
+            record.decisionOffsetMillis = (int) getVarint(body);
+            record.numberToWrite = unzigzag(getVarint(body));
+            record.recognizedNumber = unzigzag(getVarint(body));
+            record.modelWidth = (int) getVarint(body);
+            record.modelHeight = (int) getVarint(body);
+
+            int lineCount = getCount(body);
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < lineCount; i++) {
+                record.startLine();
+                int pointCount = getCount(body);
+                for (int p = 0; p < pointCount; p++) {
+                    x += unzigzag(getVarint(body));
+                    y += unzigzag(getVarint(body));
+                    record.addPoint(x, y);
+                }
+            }
+
+            int outputCount = getCount(body);
+            if (record.outputs.length < outputCount) {
+                record.outputs = new float[outputCount];
+            }
+            for (int i = 0; i < outputCount; i++) {
+                record.outputs[i] = body.getFloat();
+            }
+            record.outputCount = outputCount;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Record is shorter than its content", e);
+        }
+        if (body.hasRemaining()) {
+            throw new IOException("Record is longer than its content");
+        }
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int getCount(ByteBuffer buffer) throws IOException {
+        long count = getVarint(buffer);
+        // Every element takes at least one byte
+        if (count > buffer.remaining()) {
+            throw new IOException("Count " + count + " exceeds the record");
+        }
+        return (int) count;
+    }
+
+    static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xffffffffL;
+    }
+
+    static int unzigzag(long value) {
+        int v = (int) value;
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -0,0 +1,142 @@
+package org.literacyapp.handwriting_numbers.recording;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * Streams the records of an attempt log, one at a time into a reused {@link AttemptRecord}, so
+ * that the file is never loaded as a whole.
+ * <pre>
+ * AttemptLogReader reader = new AttemptLogReader(file);
+ * AttemptRecord record = new AttemptRecord();
+ * while (reader.next(record)) {
+ *     ...
+ * }
+ * reader.close();
+ * </pre>
+ */
+public class AttemptLogReader implements Closeable {
+
+    private final InputStream inputStream;
+    private final CRC32 crc = new CRC32();
+    private final byte[] intBytes = new byte[4];
+    private byte[] body = new byte[256];
+
+    // End of the last complete record
+    private long position;
+    private boolean truncated;
+
+    public AttemptLogReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    /**
+     * @throws IOException if the stream does not start with the header of an attempt log
+     */
+    public AttemptLogReader(InputStream inputStream) throws IOException {
+        this.inputStream = new BufferedInputStream(inputStream);
+        try {
+            if (readInt() != AttemptLogFormat.MAGIC) {
+                throw new IOException("Not an attempt log");
+            }
+            int version = readInt();
+            if (version != AttemptLogFormat.VERSION) {
+                throw new IOException("Unsupported attempt log version: " + version);
+            }
+        } catch (IOException e) {
+            this.inputStream.close();
+            throw e;
+        }
+        position = AttemptLogFormat.FILE_HEADER_SIZE;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false at the end of the file, or if the last record is incomplete
+     * @throws IOException if a record is corrupt
+     */
+    public boolean next(AttemptRecord record) throws IOException {
+        int read = read(intBytes, 4);
+        if (read == 0) {
+            return false;
+        }
+        if (read < 4) {
+            truncated = true;
+            return false;
+        }
+        int length = getInt(intBytes);
+        if ((length < 0) || (length > AttemptLogFormat.MAX_RECORD_SIZE)) {
+            throw new IOException("Invalid record length " + length + " at " + position);
+        }
+        if (body.length < length) {
+            body = new byte[Math.max(length, body.length * 2)];
+        }
+        if ((read(body, length) < length) || (read(intBytes, 4) < 4)) {
+            truncated = true;
+            return false;
+        }
+
+        crc.reset();
+        crc.update(body, 0, length);
+        if ((int) crc.getValue() != getInt(intBytes)) {
+            throw new IOException("Checksum mismatch in the record at " + position);
+        }
+        AttemptLogFormat.decode(ByteBuffer.wrap(body, 0, length), record);
+        position += AttemptLogFormat.RECORD_OVERHEAD + length;
+        return true;
+    }
+
+    /**
+     * @return the number of bytes up to the end of the last record read
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return true if {@link #next(AttemptRecord)} stopped at an incomplete record
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    private int readInt() throws IOException {
+        if (read(intBytes, 4) < 4) {
+            throw new EOFException();
+        }
+        return getInt(intBytes);
+    }
+
+    private static int getInt(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
+    /**
+     * @return the number of bytes read, less than the length only at the end of the stream
+     */
+    private int read(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = inputStream.read(bytes, offset, length - offset);
+            if (read < 0) {
+                break;
+            }
+            offset += read;
+        }
+        return offset;
+    }
+}
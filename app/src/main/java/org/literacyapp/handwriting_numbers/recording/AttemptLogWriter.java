@@ -0,0 +1,410 @@
+package org.literacyapp.handwriting_numbers.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Appends attempts to a log file on a background thread.
+ * <p />
+ *
+ * The caller takes a record with {@link #obtain()}, fills it and hands it over with
+ * {@link #submit(AttemptRecord)}. Neither blocks: the records come from a fixed pool, and when
+ * all of them are still waiting to be written, {@link #obtain()} returns null and the attempt
+ * is dropped instead of holding up the UI thread.
+ * <p />
+ *
+ * The thread writes everything which is queued with one {@link FileChannel#write(ByteBuffer)}
+ * and calls {@link FileChannel#force(boolean)} only after {@link #syncRecordCount} records or
+ * when no record has been submitted for {@link #syncIntervalMillis}. A crash can therefore lose
+ * the last few attempts, but never the records before them: when the log is opened again, an
+ * incomplete or corrupt tail is cut off.
+ * <p />
+ *
+ * Once the log has reached {@link #maxFileSize}, it is renamed to the next free name like
+ * "attempts-000001.hhal" next to it and a new log is started, so that opening it only ever
+ * scans a bounded file. Only the newest {@link #maxRolledFiles} rolled over files are kept.
+ */
+public class AttemptLogWriter {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+    public static final int DEFAULT_SYNC_RECORD_COUNT = 16;
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 2000;
+    public static final long DEFAULT_MAX_FILE_SIZE = 1024 * 1024;
+    public static final int DEFAULT_MAX_ROLLED_FILES = 8;
+
+    // Queued by close(), never handed out
+    private static final AttemptRecord CLOSE = new AttemptRecord();
+
+    private final File file;
+    private final int syncRecordCount;
+    private final long syncIntervalMillis;
+    private final long maxFileSize;
+    private final int maxRolledFiles;
+    // Rolled over files are named <prefix><index><suffix>
+    private final String rolledPrefix;
+    private final String rolledSuffix;
+
+    private final BlockingQueue<AttemptRecord> pool;
+    private final BlockingQueue<AttemptRecord> pending;
+    private final Thread thread;
+
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private volatile long writtenCount;
+    private volatile long syncCount;
+    private volatile long droppedCount;
+
+    public AttemptLogWriter(File file) {
+        this(file, DEFAULT_QUEUE_CAPACITY, DEFAULT_SYNC_RECORD_COUNT, DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Starts the writer thread, which opens the file.
+     */
+    public AttemptLogWriter(File file, int queueCapacity, int syncRecordCount, long syncIntervalMillis) {
+        this(file, queueCapacity, syncRecordCount, syncIntervalMillis, DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_ROLLED_FILES);
+    }
+
+    /**
+     * Starts the writer thread, which opens the file.
+     *
+     * @param maxFileSize     size in bytes at which the log is rolled over
+     * @param maxRolledFiles  number of rolled over files which are kept, older ones are deleted
+     */
+    public AttemptLogWriter(File file, int queueCapacity, int syncRecordCount, long syncIntervalMillis,
+                            long maxFileSize, int maxRolledFiles) {
+        this.file = file;
+        this.syncRecordCount = syncRecordCount;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.maxFileSize = maxFileSize;
+        this.maxRolledFiles = maxRolledFiles;
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        rolledPrefix = ((dot >= 0) ? name.substring(0, dot) : name) + "-";
+        rolledSuffix = (dot >= 0) ? name.substring(dot) : "";
+
+        pool = new ArrayBlockingQueue<>(queueCapacity);
+        for (int i = 0; i < queueCapacity; i++) {
+            pool.add(new AttemptRecord());
+        }
+        // Room for all records of the pool and CLOSE, so that offer() never fails
+        pending = new ArrayBlockingQueue<>(queueCapacity + 1);
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+                try {
+                    writeLoop();
+                } catch (IOException e) {
+                    failure = e;
+                    closed = true;
+                    pending.clear();
+                } catch (InterruptedException e) {
+                    closed = true;
+                }
+            }
+        }, "AttemptLogWriter");
+        thread.start();
+    }
+
+    /**
+     * @return the file which is currently written
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the rolled over files, oldest first
+     */
+    public File[] getRolledFiles() {
+        File[] rolledFiles = file.getAbsoluteFile().getParentFile().listFiles();
+        if (rolledFiles == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File rolledFile : rolledFiles) {
+            if (getRolledIndex(rolledFile) > 0) {
+                rolledFiles[count++] = rolledFile;
+            }
+        }
+        rolledFiles = Arrays.copyOf(rolledFiles, count);
+        Arrays.sort(rolledFiles, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Integer.compare(getRolledIndex(a), getRolledIndex(b));
+            }
+        });
+        return rolledFiles;
+    }
+
+    /**
+     * @return a cleared record, or null if the writer is closed or too far behind
+     */
+    public AttemptRecord obtain() {
+        AttemptRecord record = closed ? null : pool.poll();
+        if (record == null) {
+            droppedCount++;
+            return null;
+        }
+        record.clear();
+        return record;
+    }
+
+    /**
+     * Queues a record taken from {@link #obtain()}. The record must not be used afterwards.
+     */
+    public void submit(AttemptRecord record) {
+        if (closed || !pending.offer(record)) {
+            droppedCount++;
+            pool.offer(record);
+        }
+    }
+
+    /**
+     * Writes and syncs the queued records and stops the thread.
+     *
+     * @throws IOException if writing has failed
+     */
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            pending.offer(CLOSE);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the error which stopped the writer, or null
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * Attempts which were not logged because the queue was full or the writer closed.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "AttemptLogWriter{written=" + writtenCount + ", syncs=" + syncCount
+                + ", dropped=" + droppedCount + (failure != null ? ", failure=" + failure : "") + "}";
+    }
+
+    private void writeLoop() throws IOException, InterruptedException {
+        RandomAccessFile randomAccessFile = open();
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            List<AttemptRecord> batch = new ArrayList<>();
+            int unsynced = 0;
+            boolean closing = false;
+            while (!closing) {
+                AttemptRecord first = (unsynced > 0)
+                        ? pending.poll(syncIntervalMillis, TimeUnit.MILLISECONDS)
+                        : pending.take();
+                if (first == null) {
+                    // Idle for the sync interval
+                    channel.force(false);
+                    syncCount++;
+                    unsynced = 0;
+                    continue;
+                }
+
+                batch.add(first);
+                pending.drainTo(batch);
+                buffer.clear();
+                for (AttemptRecord record : batch) {
+                    if (record == CLOSE) {
+                        closing = true;
+                        continue;
+                    }
+                    int size = AttemptLogFormat.maxRecordSize(record);
+                    if (buffer.remaining() < size) {
+                        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+                        buffer.flip();
+                        grown.put(buffer);
+                        buffer = grown;
+                    }
+                    AttemptLogFormat.encode(record, buffer, crc);
+                    pool.offer(record);
+                    unsynced++;
+                    writtenCount++;
+                }
+                batch.clear();
+
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if ((unsynced >= syncRecordCount) || (closing && (unsynced > 0))) {
+                    channel.force(false);
+                    syncCount++;
+                    unsynced = 0;
+                }
+                if (isFull(channel.size())) {
+                    if (unsynced > 0) {
+                        channel.force(false);
+                        syncCount++;
+                        unsynced = 0;
+                    }
+                    randomAccessFile.close();
+                    roll();
+                    randomAccessFile = open();
+                    channel = randomAccessFile.getChannel();
+                }
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Opens the log, after rolling it over if it has already reached the maximum size.
+     */
+    private RandomAccessFile open() throws IOException {
+        if (isFull(file.length())) {
+            // E.g. the process died before it could roll the log over. Not scanned, readers
+            // stop at an incomplete last record anyway
+            roll();
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            prepare(randomAccessFile.getChannel());
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+        return randomAccessFile;
+    }
+
+    /**
+     * Writes the header to a new file, or cuts off what follows the last valid record of an
+     * existing one, and moves to the end. A file without a valid header is started over.
+     */
+    private void prepare(FileChannel channel) throws IOException {
+        if (channel.size() == 0) {
+            writeHeader(channel);
+            return;
+        }
+
+        long validLength;
+        AttemptLogReader reader;
+        try {
+            reader = new AttemptLogReader(file);
+        } catch (IOException e) {
+            // E.g. the process died while writing the header, there are no records to keep
+            channel.truncate(0);
+            writeHeader(channel);
+            return;
+        }
+        try {
+            AttemptRecord record = new AttemptRecord();
+            try {
+                while (reader.next(record)) {
+                    // Only the position is needed
+                }
+            } catch (IOException e) {
+                // Corrupt record, the reader could not get past it anyway
+            }
+            validLength = reader.getPosition();
+        } finally {
+            reader.close();
+        }
+        if (validLength < channel.size()) {
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(AttemptLogFormat.FILE_HEADER_SIZE);
+        AttemptLogFormat.writeFileHeader(header);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    /**
+     * @return true if a log of this size is rolled over, a log without records never is
+     */
+    private boolean isFull(long size) {
+        return (size >= maxFileSize) && (size > AttemptLogFormat.FILE_HEADER_SIZE);
+    }
+
+    /**
+     * Renames the log to the next rolled over name and deletes the oldest rolled over files.
+     */
+    private void roll() throws IOException {
+        File[] rolledFiles = getRolledFiles();
+        int index = (rolledFiles.length > 0) ? getRolledIndex(rolledFiles[rolledFiles.length - 1]) + 1 : 1;
+        // Padded, so that sorting by name keeps the order
+        File rolledFile = new File(file.getAbsoluteFile().getParentFile(),
+                String.format(Locale.US, "%s%06d%s", rolledPrefix, index, rolledSuffix));
+        if (!file.renameTo(rolledFile)) {
+            throw new IOException("Cannot rename " + file + " to " + rolledFile);
+        }
+        for (int i = 0; i <= rolledFiles.length - maxRolledFiles; i++) {
+            if (!rolledFiles[i].delete()) {
+                throw new IOException("Cannot delete " + rolledFiles[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the index of a rolled over file of this log, or 0 if it is none
+     */
+    private int getRolledIndex(File candidate) {
+        String name = candidate.getName();
+        if (!name.startsWith(rolledPrefix) || !name.endsWith(rolledSuffix)
+                || (name.length() <= rolledPrefix.length() + rolledSuffix.length())) {
+            return 0;
+        }
+        String digits = name.substring(rolledPrefix.length(), name.length() - rolledSuffix.length());
+        for (int i = 0; i < digits.length(); i++) {
+            if ((digits.charAt(i) < '0') || (digits.charAt(i) > '9')) {
+                return 0;
+            }
+        }
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
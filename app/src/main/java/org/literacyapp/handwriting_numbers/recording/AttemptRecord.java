@@ -0,0 +1,151 @@
+package org.literacyapp.handwriting_numbers.recording;
+
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+
+/**
+ * One attempt at writing a number: the strokes, the number which was asked for, the classifier
+ * outputs and when it happened.
+ * <p />
+ *
+ * Records are mutable and reused, see {@link AttemptLogWriter#obtain()} and
+ * {@link AttemptLogReader#next(AttemptRecord)}. The coordinates are kept in fixed point with
+ * {@link AttemptLogFormat#COORDINATE_SCALE} steps per model pixel, which is also how they are
+ * stored.
+ */
+public class AttemptRecord {
+
+    public int modelWidth;
+    public int modelHeight;
+
+    public int numberToWrite;
+    public int recognizedNumber;
+
+    // Wall clock time of the first touch
+    public long startTimeMillis;
+    // Time from the first touch to the last ACTION_UP and to the decision
+    public int touchUpOffsetMillis;
+    public int decisionOffsetMillis;
+
+    // Interleaved fixed point x/y coordinates of all points of all lines
+    int[] coordinates = new int[256 * 2];
+    int pointCount;
+    // Index of the first point of each line
+    int[] lineStarts = new int[16];
+    int lineCount;
+
+    float[] outputs = new float[16];
+    int outputCount;
+
+    public void clear() {
+        modelWidth = 0;
+        modelHeight = 0;
+        numberToWrite = 0;
+        recognizedNumber = 0;
+        startTimeMillis = 0;
+        touchUpOffsetMillis = 0;
+        decisionOffsetMillis = 0;
+        pointCount = 0;
+        lineCount = 0;
+        outputCount = 0;
+    }
+
+    /**
+     * Copies the lines of the model.
+     */
+    public void setStrokes(DrawModel model) {
+        modelWidth = model.getWidth();
+        modelHeight = model.getHeight();
+        lineCount = 0;
+        pointCount = 0;
+        float[] points = model.getPoints();
+        for (int i = 0; i < model.getLineSize(); i++) {
+            startLine();
+            for (int p = model.getLineStart(i); p < model.getLineEnd(i); p++) {
+                addPoint(Math.round(points[p * 2] * AttemptLogFormat.COORDINATE_SCALE),
+                        Math.round(points[p * 2 + 1] * AttemptLogFormat.COORDINATE_SCALE));
+            }
+        }
+    }
+
+    /**
+     * Copies the strokes into the model, which is cleared first.
+     */
+    public void getStrokes(DrawModel model) {
+        model.clear();
+        for (int i = 0; i < lineCount; i++) {
+            int start = lineStarts[i];
+            int end = getLineEnd(i);
+            if (start == end) {
+                continue;
+            }
+            model.startLine(getX(start), getY(start));
+            for (int p = start + 1; p < end; p++) {
+                model.addLineElem(getX(p), getY(p));
+            }
+            model.endLine();
+        }
+    }
+
+    public void setOutputs(float[] outputs, int count) {
+        if (this.outputs.length < count) {
+            this.outputs = new float[count];
+        }
+        System.arraycopy(outputs, 0, this.outputs, 0, count);
+        outputCount = count;
+    }
+
+    public int getOutputCount() {
+        return outputCount;
+    }
+
+    public float getOutput(int index) {
+        return outputs[index];
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public int getLineStart(int index) {
+        return lineStarts[index];
+    }
+
+    public int getLineEnd(int index) {
+        return (index + 1 < lineCount) ? lineStarts[index + 1] : pointCount;
+    }
+
+    /**
+     * @return the x coordinate of the point in model pixels
+     */
+    public float getX(int point) {
+        return coordinates[point * 2] / (float) AttemptLogFormat.COORDINATE_SCALE;
+    }
+
+    public float getY(int point) {
+        return coordinates[point * 2 + 1] / (float) AttemptLogFormat.COORDINATE_SCALE;
+    }
+
+    void startLine() {
+        if (lineCount == lineStarts.length) {
+            int[] grown = new int[lineStarts.length * 2];
+            System.arraycopy(lineStarts, 0, grown, 0, lineCount);
+            lineStarts = grown;
+        }
+        lineStarts[lineCount++] = pointCount;
+    }
+
+    void addPoint(int x, int y) {
+        if (pointCount * 2 == coordinates.length) {
+            int[] grown = new int[coordinates.length * 2];
+            System.arraycopy(coordinates, 0, grown, 0, pointCount * 2);
+            coordinates = grown;
+        }
+        coordinates[pointCount * 2] = x;
+        coordinates[pointCount * 2 + 1] = y;
+        pointCount++;
+    }
+}
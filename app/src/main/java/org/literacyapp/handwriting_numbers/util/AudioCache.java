@@ -0,0 +1,127 @@
+package org.literacyapp.handwriting_numbers.util;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.SoundPool;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseBooleanArray;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the short prompts of res/raw decoded in a {@link SoundPool}, so that feedback is played
+ * without creating a {@link android.media.MediaPlayer} and decoder for every prompt.
+ * <p />
+ *
+ * The resource ids are resolved once by {@link #load(String...)}. SoundPool has no completion
+ * callback, so the duration of each prompt is read from its WAV header and the completion is
+ * posted to the UI thread after that time.
+ */
+public class AudioCache {
+
+    private static final int MAX_STREAMS = 2;
+
+    private final Context context;
+    private final SoundPool soundPool;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Map<String, Integer> resourceIds = new HashMap<>();
+    private final Map<String, Integer> soundIds = new HashMap<>();
+    private final Map<String, Long> durations = new HashMap<>();
+    // Sound ids which have finished loading
+    private final SparseBooleanArray loaded = new SparseBooleanArray();
+
+    public AudioCache(Context context) {
+        this.context = context.getApplicationContext();
+        AudioAttributes audioAttributes = new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_GAME)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                .build();
+        soundPool = new SoundPool.Builder()
+                .setMaxStreams(MAX_STREAMS)
+                .setAudioAttributes(audioAttributes)
+                .build();
+        soundPool.setOnLoadCompleteListener(new SoundPool.OnLoadCompleteListener() {
+            @Override
+            public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+                synchronized (AudioCache.this) {
+                    loaded.put(sampleId, status == 0);
+                }
+            }
+        });
+    }
+
+    /**
+     * Resolves the raw resources with the given names and starts decoding them in the
+     * background. Names without a resource are skipped.
+     */
+    public synchronized void load(String... names) {
+        for (String name : names) {
+            if (resourceIds.containsKey(name)) {
+                continue;
+            }
+            int resourceId = context.getResources().getIdentifier(name, "raw", context.getPackageName());
+            resourceIds.put(name, resourceId);
+            if (resourceId == 0) {
+                Log.w(getClass().getName(), "No raw resource: " + name);
+                continue;
+            }
+
+            try {
+                InputStream inputStream = context.getResources().openRawResource(resourceId);
+                try {
+                    durations.put(name, WavHeader.readDurationMillis(inputStream));
+                } finally {
+                    inputStream.close();
+                }
+            } catch (IOException e) {
+                Log.w(getClass().getName(), "Cannot read the duration of " + name, e);
+                continue;
+            }
+            soundIds.put(name, soundPool.load(context, resourceId, 1));
+        }
+    }
+
+    /**
+     * @return the id of the raw resource, 0 if there is none. Each name is only resolved once.
+     */
+    public synchronized int getResourceId(String name) {
+        Integer resourceId = resourceIds.get(name);
+        if (resourceId == null) {
+            resourceId = context.getResources().getIdentifier(name, "raw", context.getPackageName());
+            resourceIds.put(name, resourceId);
+        }
+        return resourceId;
+    }
+
+    /**
+     * Plays a loaded prompt.
+     *
+     * @param onCompletion  posted to the UI thread when the prompt has finished, may be null
+     * @return false if the prompt has not been loaded (yet), in which case nothing is played
+     */
+    public synchronized boolean play(String name, Runnable onCompletion) {
+        Integer soundId = soundIds.get(name);
+        if ((soundId == null) || !loaded.get(soundId)) {
+            return false;
+        }
+        if (soundPool.play(soundId, 1, 1, 1, 0, 1) == 0) {
+            return false;
+        }
+        if (onCompletion != null) {
+            mainHandler.postDelayed(onCompletion, durations.get(name));
+        }
+        return true;
+    }
+
+    public synchronized void release() {
+        soundPool.release();
+        soundIds.clear();
+        loaded.clear();
+    }
+}
@@ -0,0 +1,111 @@
+package org.literacyapp.handwriting_numbers.util;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Keeps the bitmaps of the drawing screen between rounds, so that a new
+ * {@link org.literacyapp.handwriting_numbers.view.DrawView} reuses those of the previous one
+ * instead of allocating them again. Arrays are pooled with {@link FloatArrayPool}.
+ * <p />
+ *
+ * Bitmaps are matched by size and config, so the pool adapts to whatever model size is used.
+ * The released bitmaps are kept up to a total number of bytes, the least recently released ones
+ * are recycled first. The content of an acquired bitmap is undefined.
+ */
+public class BufferPool {
+
+    private final long maxBytes;
+
+    private final ArrayDeque<Bitmap> bitmaps = new ArrayDeque<>();
+    private long pooledBytes;
+
+    private long hitCount;
+    private long missCount;
+
+    public BufferPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return a mutable bitmap from the pool, or a new one
+     */
+    public synchronized Bitmap acquireBitmap(int width, int height, Bitmap.Config config) {
+        Iterator<Bitmap> iterator = bitmaps.iterator();
+        while (iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            if ((bitmap.getWidth() == width) && (bitmap.getHeight() == height) && (bitmap.getConfig() == config)) {
+                iterator.remove();
+                pooledBytes -= bitmap.getByteCount();
+                hitCount++;
+                return bitmap;
+            }
+        }
+        missCount++;
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Gives the bitmap back to the pool, or recycles it if it does not fit. It must not be used
+     * by the caller afterwards.
+     */
+    public synchronized void releaseBitmap(Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || (bitmap.getByteCount() > maxBytes)) {
+            bitmap.recycle();
+            return;
+        }
+        bitmaps.addFirst(bitmap);
+        pooledBytes += bitmap.getByteCount();
+        evict();
+    }
+
+    /**
+     * Recycles all pooled bitmaps, e.g. when memory is trimmed.
+     */
+    public synchronized void trim() {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        pooledBytes = 0;
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    /**
+     * Number of bitmaps which have been taken from the pool.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Number of bitmaps which had to be allocated.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BufferPool{bytes=" + pooledBytes + "/" + maxBytes + ", hits=" + hitCount + ", misses=" + missCount + "}";
+    }
+
+    /**
+     * Recycles the least recently released bitmaps until the pool fits.
+     */
+    private void evict() {
+        while ((pooledBytes > maxBytes) && !bitmaps.isEmpty()) {
+            Bitmap bitmap = bitmaps.removeLast();
+            pooledBytes -= bitmap.getByteCount();
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.literacyapp.handwriting_numbers.util;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pool of float arrays of a fixed length, so that buffers which are needed on every frame or
+ * every recognition are allocated only once.
+ */
+public class FloatArrayPool {
+
+    private final int arrayLength;
+    private final int maxPooled;
+    private final ArrayDeque<float[]> free;
+
+    public FloatArrayPool(int arrayLength, int maxPooled) {
+        this.arrayLength = arrayLength;
+        this.maxPooled = maxPooled;
+        this.free = new ArrayDeque<>(maxPooled);
+    }
+
+    public int getArrayLength() {
+        return arrayLength;
+    }
+
+    /**
+     * Returns a pooled array, or a new one if the pool is empty. The content is undefined.
+     */
+    public synchronized float[] acquire() {
+        float[] array = free.pollFirst();
+        if (array == null) {
+            array = new float[arrayLength];
+        }
+        return array;
+    }
+
+    /**
+     * Gives the array back to the pool. It must not be used by the caller afterwards.
+     */
+    public synchronized void release(float[] array) {
+        if ((array.length == arrayLength) && (free.size() < maxPooled)) {
+            free.addFirst(array);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.literacyapp.handwriting_numbers.util;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-maps model files from the assets, so that they are paged in by the OS instead of being
+ * copied into the Java heap.
+ * <p />
+ *
+ * Assets which are stored uncompressed in the APK (see {@code aaptOptions.noCompress} in
+ * build.gradle) are mapped directly from the APK. Compressed assets are extracted into the cache
+ * directory and the extracted file is mapped. The copy is tagged with the asset version, so that
+ * it is extracted again after an app update, even if the new asset has the same size.
+ */
+public class MappedAssetLoader {
+
+    private static final String VERSION_SUFFIX = ".version";
+
+    /**
+     * @param assetVersion  changes whenever the assets may have changed, e.g. the lastUpdateTime
+     *                      of the package
+     */
+    public static MappedByteBuffer map(AssetManager assetManager, File cacheDir, String fileName, long assetVersion) throws IOException {
+        try {
+            return mapUncompressedAsset(assetManager, fileName);
+        } catch (FileNotFoundException e) {
+            // openFd fails for compressed assets
+            Log.i(MappedAssetLoader.class.getName(), fileName + " is compressed, mapping an extracted copy");
+            return mapFile(extract(assetManager, cacheDir, fileName, assetVersion));
+        }
+    }
+
+    private static MappedByteBuffer mapUncompressedAsset(AssetManager assetManager, String fileName) throws IOException {
+        AssetFileDescriptor fileDescriptor = assetManager.openFd(fileName);
+        FileInputStream inputStream = fileDescriptor.createInputStream();
+        try {
+            // The mapping stays valid after the channel is closed
+            FileChannel channel = inputStream.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, fileDescriptor.getStartOffset(), fileDescriptor.getDeclaredLength());
+        } finally {
+            inputStream.close();
+            fileDescriptor.close();
+        }
+    }
+
+    private static MappedByteBuffer mapFile(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Copies the asset into the cache directory, unless a copy of the same version is already
+     * there.
+     */
+    private static File extract(AssetManager assetManager, File cacheDir, String fileName, long assetVersion) throws IOException {
+        File file = new File(cacheDir, fileName);
+        File versionFile = new File(cacheDir, fileName + VERSION_SUFFIX);
+        if (file.exists() && (readVersion(versionFile) == assetVersion)) {
+            return file;
+        }
+        // The old tag must not survive a failed copy
+        versionFile.delete();
+
+        InputStream inputStream = assetManager.open(fileName);
+        try {
+            File tmpFile = new File(cacheDir, fileName + ".tmp");
+            OutputStream outputStream = new FileOutputStream(tmpFile);
+            try {
+                byte[] buffer = new byte[16 * 1024];
+                int count;
+                while ((count = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, count);
+                }
+            } finally {
+                outputStream.close();
+            }
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Could not rename " + tmpFile + " to " + file);
+            }
+        } finally {
+            inputStream.close();
+        }
+        writeVersion(versionFile, assetVersion);
+        return file;
+    }
+
+    /**
+     * @return the version of the extracted copy, or -1 if it is unknown
+     */
+    private static long readVersion(File versionFile) {
+        if (!versionFile.exists()) {
+            return -1;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(versionFile));
+            try {
+                String line = reader.readLine();
+                if (line == null) {
+                    // Empty, e.g. the process died while writing it
+                    return -1;
+                }
+                return Long.parseLong(line.trim());
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.w(MappedAssetLoader.class.getName(), "Could not read " + versionFile, e);
+            return -1;
+        }
+    }
+
+    private static void writeVersion(File versionFile, long assetVersion) throws IOException {
+        OutputStream outputStream = new FileOutputStream(versionFile);
+        try {
+            outputStream.write(Long.toString(assetVersion).getBytes("UTF-8"));
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Resident set size of the process in KB, read from /proc/self/status, or -1 if unknown.
+     */
+    public static long readResidentSetKb() {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.w(MappedAssetLoader.class.getName(), "Could not read VmRSS", e);
+        }
+        return -1;
+    }
+}
@@ -11,10 +11,10 @@ import org.literacyapp.contentprovider.model.content.Letter;
 import org.literacyapp.contentprovider.model.content.Number;
 import org.literacyapp.contentprovider.model.content.multimedia.Audio;
 import org.literacyapp.contentprovider.util.MultimediaHelper;
+import org.literacyapp.handwriting_numbers.HandwritingNumbersApplication;
+import org.literacyapp.handwriting_numbers.metrics.Metrics;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Utility class which helps releasing the {@link MediaPlayer} instance after
@@ -22,6 +22,10 @@ import java.util.List;
  * <p />
  *
  * See https://developer.android.com/reference/android/media/MediaPlayer.html#create%28android.content.Context,%20int%29
+ * <p />
+ *
+ * The prompts are preloaded into the {@link AudioCache} of the application. They are played from
+ * the cache and only fall back to a MediaPlayer if the prompt has not been loaded yet.
  */
 public class MediaPlayerHelper {
     public static final long DEFAULT_PLAYER_DELAY = 1000;
@@ -40,9 +44,31 @@ public class MediaPlayerHelper {
 
     private static final String LESSON_FAILED_1 = "try_again";
 
+    private static final String[] INSTRUCTIONS = {
+            INSTRUCTION_NUMBER_1, INSTRUCTION_NUMBER_2, INSTRUCTION_NUMBER_3, INSTRUCTION_NUMBER_4
+    };
+    private static final String[] LESSON_COMPLETED = {
+            LESSON_COMPLETED_1, LESSON_COMPLETED_2, LESSON_COMPLETED_3, LESSON_COMPLETED_4, LESSON_COMPLETED_5, LESSON_COMPLETED_6
+    };
+    private static final String[] LESSON_FAILED = {
+            LESSON_FAILED_1
+    };
+
+    /**
+     * Names of the raw resources of all prompts, for preloading them into an {@link AudioCache}.
+     */
+    public static String[] getPromptNames() {
+        String[] names = new String[INSTRUCTIONS.length + LESSON_COMPLETED.length + LESSON_FAILED.length];
+        System.arraycopy(INSTRUCTIONS, 0, names, 0, INSTRUCTIONS.length);
+        System.arraycopy(LESSON_COMPLETED, 0, names, INSTRUCTIONS.length, LESSON_COMPLETED.length);
+        System.arraycopy(LESSON_FAILED, 0, names, INSTRUCTIONS.length + LESSON_COMPLETED.length, LESSON_FAILED.length);
+        return names;
+    }
+
     public static MediaPlayer play(Context context, int resId) {
         Log.i(MediaPlayerHelper.class.getName(), "play");
 
+        long startTime = System.nanoTime();
         final MediaPlayer mediaPlayer = MediaPlayer.create(context, resId);
         mediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
             @Override
@@ -51,6 +77,7 @@ public class MediaPlayerHelper {
             }
         });
         mediaPlayer.start();
+        Metrics.AUDIO_START.recordSince(startTime);
         mediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
             @Override
             public void onCompletion(MediaPlayer mediaPlayer) {
@@ -60,22 +87,111 @@ public class MediaPlayerHelper {
         return mediaPlayer;
     }
 
-    public static MediaPlayer playInstructionSound(Context context){
+    /**
+     * Plays a raw resource from the {@link AudioCache}, or with a MediaPlayer if it is not
+     * cached.
+     *
+     * @param onCompletion  run on the UI thread when the sound has finished, may be null
+     */
+    public static void play(Context context, String name, final Runnable onCompletion) {
+        Log.i(MediaPlayerHelper.class.getName(), "play " + name);
+
+        long startTime = System.nanoTime();
+        AudioCache audioCache = ((HandwritingNumbersApplication) context.getApplicationContext()).getAudioCache();
+        if (audioCache.play(name, onCompletion)) {
+            Metrics.AUDIO_START.recordSince(startTime);
+            return;
+        }
+
+        int resourceId = audioCache.getResourceId(name);
+        try {
+            if (resourceId != 0) {
+                MediaPlayer mediaPlayer = play(context, resourceId);
+                mediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
+                    @Override
+                    public void onCompletion(MediaPlayer mediaPlayer) {
+                        mediaPlayer.release();
+                        if (onCompletion != null) {
+                            onCompletion.run();
+                        }
+                    }
+                });
+            }
+        } catch (Resources.NotFoundException e) {
+            Log.e(context.getClass().getName(), null, e);
+        }
+    }
+
+    public static void playInstructionSound(Context context, Runnable onCompletion) {
         Log.i(context.getClass().getName(), "playInstructionSound");
 
-        List<String> instructionList = new ArrayList<>();
-        instructionList.add(INSTRUCTION_NUMBER_1);
-        instructionList.add(INSTRUCTION_NUMBER_2);
-        instructionList.add(INSTRUCTION_NUMBER_3);
-        instructionList.add(INSTRUCTION_NUMBER_4);
+        playRandom(context, INSTRUCTIONS, onCompletion);
+    }
 
-        return playRandomResource(context, instructionList);
+    public static void playLessonCompleted(Context context, Runnable onCompletion) {
+        Log.i(context.getClass().getName(), "playLessonCompleted");
+
+        playRandom(context, LESSON_COMPLETED, onCompletion);
+    }
+
+    public static void playLessonFailed(Context context, Runnable onCompletion) {
+        Log.i(context.getClass().getName(), "playLessonFailed");
+
+        playRandom(context, LESSON_FAILED, onCompletion);
+    }
+
+    private static void playRandom(Context context, String[] names, Runnable onCompletion) {
+        play(context, names[(int) (Math.random() * names.length)], onCompletion);
     }
 
     public static void playNumberSound(Context context, AudioDao audioDao, Number number){
         Log.i(context.getClass().getName(), "playNumberSound");
 
-        playSound(context, audioDao, number.getValue().toString(), Number.class);
+        String text = number.getValue().toString();
+        NumberAudioIndex numberAudioIndex = ((HandwritingNumbersApplication) context.getApplicationContext()).getNumberAudioIndex();
+        if (!numberAudioIndex.isReady()) {
+            // Only happens if a number is played before the first build has finished
+            playSound(context, audioDao, text, Number.class);
+            return;
+        }
+
+        File audioFile = numberAudioIndex.getFile(NumberAudioIndex.TRANSCRIPTION_PREFIX + text);
+        if (audioFile != null) {
+            playFile(audioFile);
+        } else {
+            // Audio not found. Fall-back to application resource.
+            playSoundFromAppResources(context, text, Number.class);
+        }
+    }
+
+    /**
+     * Prepares the sound of a number in the background, so that it starts without delay when it
+     * is needed.
+     *
+     * @return the sound, or null if it is not in the {@link NumberAudioIndex}, in which case
+     * {@link #playNumberSound(Context, AudioDao, Number)} falls back to other sources
+     */
+    public static PreparedSound prepareNumberSound(Context context, Number number) {
+        NumberAudioIndex numberAudioIndex = ((HandwritingNumbersApplication) context.getApplicationContext()).getNumberAudioIndex();
+        if (!numberAudioIndex.isReady()) {
+            return null;
+        }
+        File audioFile = numberAudioIndex.getFile(NumberAudioIndex.TRANSCRIPTION_PREFIX + number.getValue().toString());
+        if (audioFile == null) {
+            return null;
+        }
+        return PreparedSound.prepare(audioFile);
+    }
+
+    /**
+     * Prepares the player in the background, so that the UI thread does not wait for the file to
+     * be opened and parsed.
+     */
+    private static void playFile(File audioFile) {
+        PreparedSound sound = PreparedSound.prepare(audioFile);
+        if (sound != null) {
+            sound.start();
+        }
     }
 
     private static void playSound(Context context, AudioDao audioDao, String text, Class type) {
@@ -99,6 +215,7 @@ public class MediaPlayerHelper {
             // Play audio
             File audioFile = MultimediaHelper.getFile(audio);
             if (audioFile.exists()){
+                long startTime = System.nanoTime();
                 Uri uri = Uri.parse(audioFile.getAbsolutePath());
                 MediaPlayer mediaPlayer = MediaPlayer.create(context, uri);
                 mediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
@@ -109,6 +226,7 @@ public class MediaPlayerHelper {
                     }
                 });
                 mediaPlayer.start();
+                Metrics.AUDIO_START.recordSince(startTime);
             } else {
                 // Audio not found. Fall-back to application resource.
                 playSoundFromAppResources(context, text, type);
@@ -128,51 +246,6 @@ public class MediaPlayerHelper {
         } else {
             audioFileName = "digit_" + text;
         }
-        int resourceId = context.getResources().getIdentifier(audioFileName, "raw", context.getPackageName());
-        try {
-            if (resourceId != 0) {
-                play(context, resourceId);
-            }
-        } catch (Resources.NotFoundException e) {
-            Log.e(context.getClass().getName(), null, e);
-        }
-    }
-
-    public static MediaPlayer playLessonCompleted(Context context){
-        Log.i(context.getClass().getName(), "playLessonCompleted");
-
-        List<String> lessonCompletedList = new ArrayList<>();
-        lessonCompletedList.add(LESSON_COMPLETED_1);
-        lessonCompletedList.add(LESSON_COMPLETED_2);
-        lessonCompletedList.add(LESSON_COMPLETED_3);
-        lessonCompletedList.add(LESSON_COMPLETED_4);
-        lessonCompletedList.add(LESSON_COMPLETED_5);
-        lessonCompletedList.add(LESSON_COMPLETED_6);
-
-        return playRandomResource(context, lessonCompletedList);
-    }
-
-    public static MediaPlayer playLessonFailed(Context context){
-        Log.i(context.getClass().getName(), "playLessonFailed");
-
-        List<String> lessonFailedList = new ArrayList<>();
-        lessonFailedList.add(LESSON_FAILED_1);
-
-        return playRandomResource(context, lessonFailedList);
-    }
-
-
-    private static MediaPlayer playRandomResource(Context context, List<String> list){
-        Resources resources = context.getResources();
-        int resourceId = resources.getIdentifier(list.get((int)(Math.random() * list.size())), "raw", context.getPackageName());
-        MediaPlayer mediaPlayer = null;
-        try {
-            if (resourceId != 0) {
-                mediaPlayer = play(context, resourceId);
-            }
-        } catch (Resources.NotFoundException e) {
-            Log.e(context.getClass().getName(), null, e);
-        }
-        return mediaPlayer;
+        play(context, audioFileName, null);
     }
 }
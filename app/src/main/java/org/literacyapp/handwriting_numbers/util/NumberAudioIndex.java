@@ -0,0 +1,145 @@
+package org.literacyapp.handwriting_numbers.util;
+
+import android.os.FileObserver;
+import android.os.Process;
+import android.util.Log;
+
+import org.literacyapp.contentprovider.ContentProvider;
+import org.literacyapp.contentprovider.dao.AudioDao;
+import org.literacyapp.contentprovider.model.content.multimedia.Audio;
+import org.literacyapp.contentprovider.util.MultimediaHelper;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index from the transcription of the digit audios in the content database
+ * ("digit_3") to their files, so that playing a number needs neither a database query nor a
+ * file check on the UI thread.
+ * <p />
+ *
+ * The index is built in the background once the database has been initialized. It is rebuilt
+ * when {@link #invalidate()} is called or when files in the multimedia directory of the content
+ * are created, deleted or rewritten, which is what happens when the content is updated. Lookups
+ * keep using the previous index until the new one is ready. If the index cannot be built, it
+ * stays not ready and callers fall back to querying the database.
+ */
+public class NumberAudioIndex {
+
+    public static final String TRANSCRIPTION_PREFIX = "digit_";
+
+    private static final int WATCHED_EVENTS = FileObserver.CREATE | FileObserver.DELETE
+            | FileObserver.MOVED_FROM | FileObserver.MOVED_TO | FileObserver.CLOSE_WRITE;
+
+    private volatile Map<String, File> files;
+
+    private boolean building;
+    private boolean dirty;
+
+    private FileObserver audioDirectoryObserver;
+
+    /**
+     * Builds the index in the background. Must be called after
+     * {@link ContentProvider#initializeDb(android.content.Context)}.
+     */
+    public synchronized void build() {
+        if (building) {
+            // Build again once the running build has finished
+            dirty = true;
+            return;
+        }
+        building = true;
+        dirty = false;
+        watchAudioDirectory();
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                load();
+            }
+        }, "NumberAudioIndex");
+        thread.start();
+    }
+
+    /**
+     * Rebuilds the index, for example after the content database has been updated.
+     */
+    public void invalidate() {
+        Log.i(getClass().getName(), "invalidate");
+        build();
+    }
+
+    /**
+     * @return false until the first build has finished
+     */
+    public boolean isReady() {
+        return files != null;
+    }
+
+    /**
+     * @return the audio file for the transcription, or null if there is none or the index is
+     * not ready yet
+     */
+    public File getFile(String transcription) {
+        Map<String, File> current = files;
+        return (current != null) ? current.get(transcription) : null;
+    }
+
+    private void load() {
+        long startTime = System.currentTimeMillis();
+        Map<String, File> loaded = new HashMap<>();
+        boolean succeeded = false;
+        try {
+            AudioDao audioDao = ContentProvider.getDaoSession().getAudioDao();
+            List<Audio> audios = audioDao.loadAll();
+            for (Audio audio : audios) {
+                String transcription = audio.getTranscription();
+                if ((transcription == null) || !transcription.startsWith(TRANSCRIPTION_PREFIX)) {
+                    continue;
+                }
+                File file = MultimediaHelper.getFile(audio);
+                if ((file != null) && file.exists()) {
+                    loaded.put(transcription, file);
+                }
+            }
+            succeeded = true;
+            Log.i(getClass().getName(), "Indexed " + loaded.size() + " number audios in " + (System.currentTimeMillis() - startTime) + " ms");
+        } catch (RuntimeException e) {
+            Log.e(getClass().getName(), "Error building the number audio index", e);
+        }
+
+        boolean again;
+        synchronized (this) {
+            // After a failure the previous index, if any, stays in use
+            if (succeeded) {
+                files = Collections.unmodifiableMap(loaded);
+            }
+            building = false;
+            again = dirty;
+        }
+        if (again) {
+            build();
+        }
+    }
+
+    private void watchAudioDirectory() {
+        if (audioDirectoryObserver != null) {
+            return;
+        }
+        // Watched even if it does not contain any audio yet, so that the first download is noticed
+        File directory = MultimediaHelper.getMultimediaDirectory();
+        // Kept in a field, an observer stops watching when it is garbage collected
+        audioDirectoryObserver = new FileObserver(directory.getAbsolutePath(), WATCHED_EVENTS) {
+            @Override
+            public void onEvent(int event, String path) {
+                Log.i(NumberAudioIndex.class.getName(), "Audio directory changed: " + path);
+                invalidate();
+            }
+        };
+        audioDirectoryObserver.startWatching();
+    }
+}
@@ -0,0 +1,101 @@
+package org.literacyapp.handwriting_numbers.util;
+
+import android.media.MediaPlayer;
+import android.util.Log;
+
+import org.literacyapp.handwriting_numbers.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A sound file which is prepared in the background before it is needed, e.g. the number of the
+ * next round while the current one is being celebrated. {@link #start()} plays it as soon as it
+ * is prepared, immediately if that has already happened.
+ * <p />
+ *
+ * Must be used on the UI thread. The player is released when the sound has finished, or by
+ * {@link #release()} if it is not needed any more.
+ */
+public class PreparedSound {
+
+    private final MediaPlayer mediaPlayer = new MediaPlayer();
+
+    private boolean prepared;
+    private boolean released;
+    // Set by start(), 0 while it has not been called
+    private long startTime;
+
+    private PreparedSound() {
+    }
+
+    /**
+     * @return the sound, or null if the file cannot be opened
+     */
+    public static PreparedSound prepare(File audioFile) {
+        PreparedSound sound = new PreparedSound();
+        try {
+            sound.prepareAsync(audioFile);
+        } catch (IOException e) {
+            Log.e(PreparedSound.class.getName(), null, e);
+            sound.release();
+            return null;
+        }
+        return sound;
+    }
+
+    private void prepareAsync(File audioFile) throws IOException {
+        mediaPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+            @Override
+            public void onPrepared(MediaPlayer mediaPlayer) {
+                prepared = true;
+                if (startTime != 0) {
+                    play();
+                }
+            }
+        });
+        mediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
+            @Override
+            public void onCompletion(MediaPlayer mediaPlayer) {
+                Log.i(getClass().getName(), "onCompletion");
+                release();
+            }
+        });
+        mediaPlayer.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+            @Override
+            public boolean onError(MediaPlayer mediaPlayer, int what, int extra) {
+                Log.w(getClass().getName(), "onError, what: " + what + ", extra: " + extra);
+                release();
+                return true;
+            }
+        });
+        mediaPlayer.setDataSource(audioFile.getAbsolutePath());
+        mediaPlayer.prepareAsync();
+    }
+
+    /**
+     * Plays the sound once it is prepared. Has no effect if it has already been started or
+     * released.
+     */
+    public void start() {
+        if (released || (startTime != 0)) {
+            return;
+        }
+        startTime = System.nanoTime();
+        if (prepared) {
+            play();
+        }
+    }
+
+    private void play() {
+        mediaPlayer.start();
+        Metrics.AUDIO_START.recordSince(startTime);
+    }
+
+    public void release() {
+        if (!released) {
+            released = true;
+            mediaPlayer.release();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.literacyapp.handwriting_numbers.util;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the duration of a PCM WAV file from its header. {@link android.media.SoundPool} does not
+ * report when a sound has finished playing, so the duration is needed to continue after a
+ * prompt.
+ */
+public final class WavHeader {
+
+    private WavHeader() {
+    }
+
+    /**
+     * @return the duration in milliseconds, read from the "fmt " and "data" chunks
+     * @throws IOException if the stream is not a WAV file
+     */
+    public static long readDurationMillis(InputStream inputStream) throws IOException {
+        DataInputStream dataInputStream = new DataInputStream(inputStream);
+        byte[] id = new byte[4];
+        dataInputStream.readFully(id);
+        if (!"RIFF".equals(new String(id, "US-ASCII"))) {
+            throw new IOException("Not a RIFF file");
+        }
+        readIntLittleEndian(dataInputStream);
+        dataInputStream.readFully(id);
+        if (!"WAVE".equals(new String(id, "US-ASCII"))) {
+            throw new IOException("Not a WAVE file");
+        }
+
+        long byteRate = 0;
+        while (true) {
+            dataInputStream.readFully(id);
+            String chunkId = new String(id, "US-ASCII");
+            long chunkSize = readIntLittleEndian(dataInputStream) & 0xffffffffL;
+            if ("fmt ".equals(chunkId)) {
+                // Format, channels and sample rate come before the byte rate
+                skipFully(dataInputStream, 8);
+                byteRate = readIntLittleEndian(dataInputStream) & 0xffffffffL;
+                skipFully(dataInputStream, chunkSize - 12 + (chunkSize & 1));
+            } else if ("data".equals(chunkId)) {
+                if (byteRate == 0) {
+                    throw new IOException("data chunk before fmt chunk");
+                }
+                return chunkSize * 1000 / byteRate;
+            } else {
+                // Chunks are padded to an even size
+                skipFully(dataInputStream, chunkSize + (chunkSize & 1));
+            }
+        }
+    }
+
+    private static int readIntLittleEndian(DataInputStream dataInputStream) throws IOException {
+        return Integer.reverseBytes(dataInputStream.readInt());
+    }
+
+    private static void skipFully(DataInputStream dataInputStream, long count) throws IOException {
+        while (count > 0) {
+            int skipped = dataInputStream.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.literacyapp.handwriting_numbers.view;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import org.literacyapp.handwriting_numbers.BuildConfig;
+import org.literacyapp.handwriting_numbers.ModelRegistry;
+import org.literacyapp.handwriting_numbers.metrics.Metrics;
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.RecognitionPipeline;
+
+/**
+ * Runs the digit recognition on a dedicated inference thread and delivers the result back to
+ * the UI thread.
+ * <p />
+ *
+ * There is a single pending slot. A request which is submitted while an older one is still
+ * waiting replaces it, so only the most recent drawing is recognized. Submitting only copies
+ * the pixels, the caller never waits for the classifier.
+ * <p />
+ *
+ * A request may hold up to {@link #MAX_BATCH_SIZE} drawings, e.g. the digits of a number, which
+ * are classified with one batch call.
+ */
+public class AsyncRecognizer {
+
+    public interface Callback {
+        /**
+         * Called on the UI thread with the classifier outputs of a request, OUTPUT_SIZE per
+         * drawing.
+         */
+        void onRecognized(long requestId, float[] outputs);
+    }
+
+    public static final int MAX_BATCH_SIZE = RecognitionPipeline.MAX_DIGITS;
+
+    private final ModelRegistry modelRegistry;
+    private final int inputSize;
+    private final int outputSize;
+
+    private final HandlerThread mInferenceThread;
+    private final Handler mInferenceHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final Object mLock = new Object();
+    private float[] mPendingPixels;
+    private long mPendingRequestId;
+    private int mPendingBatchSize;
+    private boolean mHasPending;
+    private float[] mRunningPixels;
+
+    private volatile Callback mCallback;
+
+    private final Runnable mRecognizeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            recognizePending();
+        }
+    };
+
+    public AsyncRecognizer(ModelRegistry modelRegistry) {
+        this.modelRegistry = modelRegistry;
+        this.inputSize = DigitClassifier.INPUT_SIZE;
+        this.outputSize = DigitClassifier.OUTPUT_SIZE;
+
+        mPendingPixels = new float[MAX_BATCH_SIZE * inputSize * inputSize];
+        mRunningPixels = new float[MAX_BATCH_SIZE * inputSize * inputSize];
+
+        mInferenceThread = new HandlerThread("AsyncRecognizer", Process.THREAD_PRIORITY_DEFAULT);
+        mInferenceThread.start();
+        mInferenceHandler = new Handler(mInferenceThread.getLooper());
+    }
+
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Queues the pixels for recognition, replacing a request that has not been started yet.
+     */
+    public void submit(long requestId, float[] pixels) {
+        submit(requestId, pixels, 1);
+    }
+
+    /**
+     * Same as {@link #submit(long, float[])} for {@code batchSize} drawings, one after another.
+     */
+    public void submit(long requestId, float[] pixels, int batchSize) {
+        if ((batchSize < 1) || (batchSize > MAX_BATCH_SIZE)) {
+            throw new IllegalArgumentException("batchSize must be between 1 and " + MAX_BATCH_SIZE + ": " + batchSize);
+        }
+        synchronized (mLock) {
+            System.arraycopy(pixels, 0, mPendingPixels, 0, batchSize * inputSize * inputSize);
+            mPendingRequestId = requestId;
+            mPendingBatchSize = batchSize;
+            if (!mHasPending) {
+                mHasPending = true;
+                mInferenceHandler.post(mRecognizeRunnable);
+            }
+        }
+    }
+
+    /**
+     * Stops the inference thread. Results of requests still in progress are dropped.
+     */
+    public void release() {
+        mCallback = null;
+        mInferenceThread.quitSafely();
+    }
+
+    private void recognizePending() {
+        // Waits for the shared classifier in case the first round starts before it is loaded
+        final DigitClassifier classifier;
+        try {
+            classifier = modelRegistry.await();
+        } catch (InterruptedException e) {
+            Log.w(getClass().getName(), "Interrupted while waiting for the model", e);
+            return;
+        }
+
+        final long requestId;
+        final int batchSize;
+        synchronized (mLock) {
+            if (!mHasPending) {
+                return;
+            }
+            float[] pixels = mRunningPixels;
+            mRunningPixels = mPendingPixels;
+            mPendingPixels = pixels;
+            requestId = mPendingRequestId;
+            batchSize = mPendingBatchSize;
+            mHasPending = false;
+        }
+
+        final float[] outputs = new float[batchSize * outputSize];
+        if (classifier == null) {
+            // The model could not be loaded, the scores stay 0 so that nothing is recognized
+            Log.w(getClass().getName(), "No classifier, request " + requestId + " not recognized");
+        } else {
+            synchronized (classifier) {
+                long startTime = System.nanoTime();
+                if (batchSize == 1) {
+                    // Single drawings can be served from the cache
+                    classifier.classify(mRunningPixels, outputs);
+                } else {
+                    classifier.classify(mRunningPixels, batchSize, outputs);
+                }
+                Metrics.CLASSIFY.recordSince(startTime);
+            }
+        }
+        if (BuildConfig.DEBUG) {
+            Log.d(getClass().getName(), "recognized request " + requestId);
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Callback callback = mCallback;
+                if (callback != null) {
+                    callback.onRecognized(requestId, outputs);
+                }
+            }
+        });
+    }
+}
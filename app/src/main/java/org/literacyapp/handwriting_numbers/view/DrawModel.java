@@ -16,15 +16,15 @@
 
 package org.literacyapp.handwriting_numbers.view;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Created by amitshekhar on 16/03/17.
  */
 
 public class DrawModel {
 
+    private static final int INITIAL_POINT_CAPACITY = 1024;
+    private static final int INITIAL_LINE_CAPACITY = 16;
+
     public static class LineElem {
         public float x;
         public float y;
@@ -35,31 +35,44 @@ public class DrawModel {
         }
     }
 
+    /**
+     * Read-only view of a single line. Kept for compatibility, new code should walk
+     * {@link #getPoints()} between {@link #getLineStart(int)} and {@link #getLineEnd(int)}.
+     */
     public static class Line {
-        private List<LineElem> elems = new ArrayList<>();
+        private final DrawModel model;
+        private final int index;
 
-        private Line() {
-        }
-
-        private void addElem(LineElem elem) {
-            elems.add(elem);
+        private Line(DrawModel model, int index) {
+            this.model = model;
+            this.index = index;
         }
 
         public int getElemSize() {
-            return elems.size();
+            return model.getLineEnd(index) - model.getLineStart(index);
         }
 
         public LineElem getElem(int index) {
-            return elems.get(index);
+            int point = model.getLineStart(this.index) + index;
+            return new LineElem(model.mPoints[point * 2], model.mPoints[point * 2 + 1]);
         }
     }
 
-    private Line mCurrentLine;
-
     private int mWidth;  // pixel width = 28
     private int mHeight; // pixel height = 28
 
-    private List<Line> mLines = new ArrayList<>();
+    // Interleaved x/y coordinates of all points of all lines
+    private float[] mPoints = new float[INITIAL_POINT_CAPACITY * 2];
+    private int mPointCount;
+
+    // Index of the first point of each line, the end of a line is the start of the next one
+    private int[] mLineStarts = new int[INITIAL_LINE_CAPACITY];
+    private int mLineCount;
+
+    private boolean mLineOpen;
+
+    private int mClearCount;
+    private int mTailRevision;
 
     public DrawModel(int width, int height) {
         this.mWidth = width;
@@ -75,30 +88,132 @@ public class DrawModel {
     }
 
     public void startLine(float x, float y) {
-        mCurrentLine = new Line();
-        mCurrentLine.addElem(new LineElem(x, y));
-        mLines.add(mCurrentLine);
+        if (mLineCount == mLineStarts.length) {
+            int[] lineStarts = new int[mLineStarts.length * 2];
+            System.arraycopy(mLineStarts, 0, lineStarts, 0, mLineCount);
+            mLineStarts = lineStarts;
+        }
+        mLineStarts[mLineCount++] = mPointCount;
+        mLineOpen = true;
+        appendPoint(x, y);
     }
 
     public void endLine() {
-        mCurrentLine = null;
+        mLineOpen = false;
     }
 
     public void addLineElem(float x, float y) {
-        if (mCurrentLine != null) {
-            mCurrentLine.addElem(new LineElem(x, y));
+        if (mLineOpen) {
+            appendPoint(x, y);
+        }
+    }
+
+    /**
+     * Appends several points to the open line in one pass, e.g. the historical samples of a
+     * MotionEvent.
+     *
+     * @param points  interleaved x/y coordinates
+     * @param count   number of points (not floats)
+     */
+    public void addLineElems(float[] points, int count) {
+        if (!mLineOpen) {
+            return;
+        }
+        ensurePointCapacity(mPointCount + count);
+        System.arraycopy(points, 0, mPoints, mPointCount * 2, count * 2);
+        mPointCount += count;
+    }
+
+    /**
+     * Moves the last point of the open line, which is used by {@link StrokeSimplifier} to extend
+     * the last segment instead of adding a point. The first point of a line is never moved.
+     */
+    public void setLastLineElem(float x, float y) {
+        if (!mLineOpen || (mPointCount - mLineStarts[mLineCount - 1] < 2)) {
+            return;
+        }
+        int offset = (mPointCount - 1) * 2;
+        mPoints[offset] = x;
+        mPoints[offset + 1] = y;
+        mTailRevision++;
+    }
+
+    /**
+     * Number of times the last point has been moved by {@link #setLastLineElem(float, float)},
+     * so that a view which has already drawn the last segment knows to draw it again.
+     */
+    public int getTailRevision() {
+        return mTailRevision;
+    }
+
+    private void appendPoint(float x, float y) {
+        ensurePointCapacity(mPointCount + 1);
+        int offset = mPointCount * 2;
+        mPoints[offset] = x;
+        mPoints[offset + 1] = y;
+        mPointCount++;
+    }
+
+    private void ensurePointCapacity(int pointCount) {
+        if (pointCount * 2 > mPoints.length) {
+            float[] points = new float[Math.max(mPoints.length * 2, pointCount * 2)];
+            System.arraycopy(mPoints, 0, points, 0, mPointCount * 2);
+            mPoints = points;
         }
     }
 
     public int getLineSize() {
-        return mLines.size();
+        return mLineCount;
     }
 
     public Line getLine(int index) {
-        return mLines.get(index);
+        if (index < 0 || index >= mLineCount) {
+            throw new IndexOutOfBoundsException("Invalid line index " + index + ", size is " + mLineCount);
+        }
+        return new Line(this, index);
+    }
+
+    /**
+     * Interleaved x/y coordinates of all points. The array is reused and may be replaced when
+     * the model grows, so it must not be kept across calls to {@link #startLine(float, float)}
+     * or {@link #addLineElem(float, float)}.
+     */
+    public float[] getPoints() {
+        return mPoints;
+    }
+
+    public int getPointCount() {
+        return mPointCount;
+    }
+
+    /**
+     * Index of the first point of the line in {@link #getPoints()} (in points, not floats).
+     */
+    public int getLineStart(int index) {
+        return mLineStarts[index];
+    }
+
+    /**
+     * Index after the last point of the line in {@link #getPoints()} (in points, not floats).
+     */
+    public int getLineEnd(int index) {
+        return (index + 1 < mLineCount) ? mLineStarts[index + 1] : mPointCount;
+    }
+
+    /**
+     * Identifies the current drawing: the line count and point count, together with the number
+     * of times the model has been cleared or its last point has been moved, so that a different
+     * drawing with the same counts has a different version. Results computed for a version are
+     * valid as long as the version does not change.
+     */
+    public long getVersion() {
+        return ((long) (mClearCount + mTailRevision) << 48) ^ ((long) mLineCount << 32) ^ mPointCount;
     }
 
     public void clear() {
-        mLines.clear();
+        mLineCount = 0;
+        mPointCount = 0;
+        mLineOpen = false;
+        mClearCount++;
     }
 }
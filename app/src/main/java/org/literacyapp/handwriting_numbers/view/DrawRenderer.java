@@ -21,40 +21,121 @@ import android.graphics.Color;
 import android.graphics.CornerPathEffect;
 import android.graphics.Paint;
 
+import org.literacyapp.handwriting_numbers.util.FloatArrayPool;
+
 /**
  * Created by amitshekhar on 16/03/17.
  */
 
 public class DrawRenderer {
+
+    // Segments per drawLines call, each segment takes 4 floats
+    private static final int BATCH_SEGMENTS = 256;
+
+    private static final FloatArrayPool BATCH_POOL = new FloatArrayPool(BATCH_SEGMENTS * 4, 2);
+
     /**
      * Draw lines to canvas
      */
     public static void renderModel(Canvas canvas, DrawModel model, Paint paint,
                                    int startLineIndex) {
+        renderModel(canvas, model, paint, startLineIndex, 0);
+    }
+
+    /**
+     * Draw the segments which end at or after the given element of the start line, and all
+     * segments of the following lines.
+     *
+     * @return the number of segments drawn
+     */
+    public static int renderModel(Canvas canvas, DrawModel model, Paint paint,
+                                  int startLineIndex, int startElemIndex) {
         paint.setColor(Color.BLACK);
         paint.setStyle(Paint.Style.STROKE);
 
+        int segmentCount = 0;
+        float[] points = model.getPoints();
         int lineSize = model.getLineSize();
         for (int i = startLineIndex; i < lineSize; ++i) {
-            DrawModel.Line line = model.getLine(i);
-
-            int elemSize = line.getElemSize();
-            if (elemSize < 1) {
+            int start = model.getLineStart(i);
+            int end = model.getLineEnd(i);
+            if (end - start < 1) {
+                continue;
+            }
+            int first = start;
+            if (i == startLineIndex) {
+                first += startElemIndex;
+            }
+            if (first >= end) {
                 continue;
             }
-            DrawModel.LineElem elem = line.getElem(0);
-            float lastX = elem.x;
-            float lastY = elem.y;
-
-            for (int j = 0; j < elemSize; ++j) {
-                elem = line.getElem(j);
-                float x = elem.x;
-                float y = elem.y;
+            int previous = (first > start) ? first - 1 : start;
+            float lastX = points[previous * 2];
+            float lastY = points[previous * 2 + 1];
+
+            for (int j = first; j < end; ++j) {
+                float x = points[j * 2];
+                float y = points[j * 2 + 1];
                 canvas.drawLine(lastX, lastY, x, y, paint);
                 lastX = x;
                 lastY = y;
             }
+            segmentCount += end - first;
         }
+        return segmentCount;
     }
-}
 
+    /**
+     * Same as {@link #renderModel(Canvas, DrawModel, Paint, int, int)}, but collects the segments
+     * into a pooled buffer and draws them with a single {@link Canvas#drawLines(float[], int, int, Paint)}
+     * call per {@link #BATCH_SEGMENTS} segments. The paint is used as it is, it has to be set up
+     * for drawing ink by the caller.
+     *
+     * @return the number of segments drawn
+     */
+    public static int renderModelBatched(Canvas canvas, DrawModel model, Paint paint,
+                                         int startLineIndex, int startElemIndex) {
+        float[] batch = BATCH_POOL.acquire();
+        int batchSize = 0;
+
+        int segmentCount = 0;
+        float[] points = model.getPoints();
+        int lineSize = model.getLineSize();
+        for (int i = startLineIndex; i < lineSize; ++i) {
+            int start = model.getLineStart(i);
+            int end = model.getLineEnd(i);
+            int first = start;
+            if (i == startLineIndex) {
+                first += startElemIndex;
+            }
+            if (first >= end) {
+                continue;
+            }
+            int previous = (first > start) ? first - 1 : start;
+            float lastX = points[previous * 2];
+            float lastY = points[previous * 2 + 1];
+
+            for (int j = first; j < end; ++j) {
+                float x = points[j * 2];
+                float y = points[j * 2 + 1];
+                batch[batchSize++] = lastX;
+                batch[batchSize++] = lastY;
+                batch[batchSize++] = x;
+                batch[batchSize++] = y;
+                if (batchSize == batch.length) {
+                    canvas.drawLines(batch, 0, batchSize, paint);
+                    batchSize = 0;
+                }
+                lastX = x;
+                lastY = y;
+            }
+            segmentCount += end - first;
+        }
+        if (batchSize > 0) {
+            canvas.drawLines(batch, 0, batchSize, paint);
+        }
+
+        BATCH_POOL.release(batch);
+        return segmentCount;
+    }
+}
@@ -25,44 +25,143 @@ import android.graphics.CornerPathEffect;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PointF;
-import android.graphics.Rect;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.View;
 
+import org.literacyapp.handwriting_numbers.metrics.Metrics;
+import org.literacyapp.handwriting_numbers.recognition.PixelConversion;
+import org.literacyapp.handwriting_numbers.recognition.RecognitionPipeline;
+import org.literacyapp.handwriting_numbers.util.BufferPool;
+
+import java.nio.ByteBuffer;
+
 /**
  * Created by amitshekhar on 16/03/17.
  */
 
 public class DrawView extends View {
+    // Width of the pen in model (bitmap) coordinates, the recognition rasterizes the same pen
+    public static final float STROKE_WIDTH = RecognitionPipeline.STROKE_WIDTH;
+
     private Paint mPaint = new Paint();
+    private Paint mBitmapPaint = new Paint();
+    private Paint mBackgroundPaint = new Paint();
     private DrawModel mModel;
 
+    // Null if the bitmaps are allocated and recycled by the view itself
+    private BufferPool mBufferPool;
     private Bitmap mOffscreenBitmap;
     private Canvas mOffscreenCanvas;
 
+    // Input sized copy of the offscreen bitmap, only allocated by getPixelData
+    private Bitmap mScaledBitmap;
+    private Canvas mScaledCanvas;
+    private int[] mScaledPixels;
+    private byte[] mScaledAlpha;
+    private ByteBuffer mScaledAlphaBuffer;
+    private Matrix mScaleMatrix = new Matrix();
+    private Paint mScalePaint = new Paint();
+
     private Matrix mMatrix = new Matrix();
     private Matrix mInvMatrix = new Matrix();
-    private int mDrawnLineSize = 0;
+    // Cursor behind the last segment which has been drawn to the offscreen bitmap
+    private int mDrawnLine = 0;
+    private int mDrawnElem = 0;
+    private int mDrawnTailRevision = 0;
+    private int mLastFrameSegmentCount = 0;
+    private int mMaxFrameSegmentCount = 0;
+    private boolean mBatchedRendering = true;
+    private boolean mSingleChannel = true;
     private boolean mSetuped = false;
 
+    // Input which has not been drawn yet, see invalidateOnNextFrame
+    private boolean mFrameRequested = false;
+    private long mPendingInputTime = 0;
+    private long mLastInputLatencyMillis = 0;
+    private long mMaxInputLatencyMillis = 0;
+    private long mTotalInputLatencyMillis = 0;
+    private int mInputFrameCount = 0;
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrameRequested = false;
+            invalidate();
+        }
+    };
+
     private float mTmpPoints[] = new float[2];
 
     public DrawView(Context context, AttributeSet attrs) {
         super(context, attrs);
+
+        // The scaled bitmap is overwritten, also where the source is transparent
+        mScalePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        mBackgroundPaint.setColor(Color.WHITE);
+        // ALPHA_8 bitmaps are drawn in the color of the paint
+        mBitmapPaint.setColor(Color.BLACK);
     }
 
     public void setModel(DrawModel model) {
         this.mModel = model;
     }
 
+    /**
+     * Takes the bitmaps from a pool which outlives the view, so that the next round reuses them.
+     * Must be set before {@link #onResume()}.
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        mBufferPool = bufferPool;
+    }
+
+    /**
+     * Draw all new segments with one {@link Canvas#drawLines(float[], int, int, Paint)} call
+     * instead of one {@link Canvas#drawLine(float, float, float, float, Paint)} per segment.
+     */
+    public void setBatchedRendering(boolean batchedRendering) {
+        mBatchedRendering = batchedRendering;
+    }
+
+    /**
+     * Keep only the ink coverage in an {@link Bitmap.Config#ALPHA_8} offscreen bitmap instead
+     * of black on white in {@link Bitmap.Config#ARGB_8888}, which takes a quarter of the
+     * memory. The ink is drawn over white on screen, so both look the same. Must be set before
+     * {@link #onResume()}.
+     */
+    public void setSingleChannel(boolean singleChannel) {
+        mSingleChannel = singleChannel;
+    }
+
+    /**
+     * Redraws the view on the next display frame. Any number of calls before that frame result
+     * in a single invalidation.
+     *
+     * @param inputEventTime  {@link android.view.MotionEvent#getEventTime()} of the oldest input
+     *                        which changed the model, for measuring the input-to-frame latency
+     */
+    public void invalidateOnNextFrame(long inputEventTime) {
+        if (mPendingInputTime == 0) {
+            mPendingInputTime = inputEventTime;
+        }
+        if (!mFrameRequested) {
+            mFrameRequested = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
     public void reset() {
-        mDrawnLineSize = 0;
+        mDrawnLine = 0;
+        mDrawnElem = 0;
         if (mOffscreenBitmap != null) {
-            mPaint.setColor(Color.WHITE);
-            mPaint.setStyle(Paint.Style.FILL);
-            int width = mModel.getWidth();
-            int height = mModel.getHeight();
-            mOffscreenCanvas.drawRect(new Rect(0, 0, width, height), mPaint);
+            if (mOffscreenBitmap.getConfig() == Bitmap.Config.ALPHA_8) {
+                mOffscreenBitmap.eraseColor(Color.TRANSPARENT);
+            } else {
+                mOffscreenCanvas.drawColor(Color.WHITE);
+            }
         }
     }
 
@@ -108,15 +207,95 @@ public class DrawView extends View {
             return;
         }
 
-        int startIndex = mDrawnLineSize - 1;
-        if (startIndex < 0) {
-            startIndex = 0;
+        if ((mModel.getTailRevision() != mDrawnTailRevision) && (mDrawnElem > 1)) {
+            // The last point has been moved, draw the last segment again
+            mDrawnElem--;
+        }
+        mDrawnTailRevision = mModel.getTailRevision();
+
+        // Only draw the segments which have been added since the previous frame
+        if (mBatchedRendering) {
+            mLastFrameSegmentCount = DrawRenderer.renderModelBatched(mOffscreenCanvas, mModel, mPaint, mDrawnLine, mDrawnElem);
+        } else {
+            mLastFrameSegmentCount = DrawRenderer.renderModel(mOffscreenCanvas, mModel, mPaint, mDrawnLine, mDrawnElem);
+        }
+        if (mLastFrameSegmentCount > mMaxFrameSegmentCount) {
+            mMaxFrameSegmentCount = mLastFrameSegmentCount;
+        }
+        if (mOffscreenBitmap.getConfig() == Bitmap.Config.ALPHA_8) {
+            canvas.save();
+            canvas.concat(mMatrix);
+            canvas.drawRect(0, 0, mOffscreenBitmap.getWidth(), mOffscreenBitmap.getHeight(), mBackgroundPaint);
+            canvas.drawBitmap(mOffscreenBitmap, 0, 0, mBitmapPaint);
+            canvas.restore();
+        } else {
+            canvas.drawBitmap(mOffscreenBitmap, mMatrix, mBitmapPaint);
         }
 
-        DrawRenderer.renderModel(mOffscreenCanvas, mModel, mPaint, startIndex);
-        canvas.drawBitmap(mOffscreenBitmap, mMatrix, mPaint);
+        if (mPendingInputTime != 0) {
+            // Event times use the uptime clock
+            mLastInputLatencyMillis = SystemClock.uptimeMillis() - mPendingInputTime;
+            mTotalInputLatencyMillis += mLastInputLatencyMillis;
+            mInputFrameCount++;
+            Metrics.TOUCH_TO_FRAME.record(mLastInputLatencyMillis * 1000000);
+            if (mLastInputLatencyMillis > mMaxInputLatencyMillis) {
+                mMaxInputLatencyMillis = mLastInputLatencyMillis;
+            }
+            mPendingInputTime = 0;
+        }
 
-        mDrawnLineSize = mModel.getLineSize();
+        int lineSize = mModel.getLineSize();
+        if (lineSize > 0) {
+            mDrawnLine = lineSize - 1;
+            mDrawnElem = mModel.getLineEnd(mDrawnLine) - mModel.getLineStart(mDrawnLine);
+        }
+    }
+
+    /**
+     * Number of segments drawn to the offscreen bitmap by the last {@link #onDraw(Canvas)}, for
+     * debugging. It should not grow with the length of the stroke.
+     */
+    public int getLastFrameSegmentCount() {
+        return mLastFrameSegmentCount;
+    }
+
+    /**
+     * Largest number of segments drawn in a single frame since the view was created.
+     */
+    public int getMaxFrameSegmentCount() {
+        return mMaxFrameSegmentCount;
+    }
+
+    /**
+     * Time from the oldest input drawn by the last frame until the frame was drawn.
+     */
+    public long getLastInputLatencyMillis() {
+        return mLastInputLatencyMillis;
+    }
+
+    public long getMaxInputLatencyMillis() {
+        return mMaxInputLatencyMillis;
+    }
+
+    public long getAverageInputLatencyMillis() {
+        return (mInputFrameCount > 0) ? mTotalInputLatencyMillis / mInputFrameCount : 0;
+    }
+
+    /**
+     * Number of frames which have drawn new input.
+     */
+    public int getInputFrameCount() {
+        return mInputFrameCount;
+    }
+
+    /**
+     * Convert screen positions to local positions (positions in bitmap) in place.
+     *
+     * @param points  interleaved x/y coordinates
+     * @param count   number of points (not floats)
+     */
+    public void calcPos(float[] points, int count) {
+        mInvMatrix.mapPoints(points, 0, points, 0, count);
     }
 
     /**
@@ -135,14 +314,21 @@ public class DrawView extends View {
     }
 
     public void onPause() {
+        if (mFrameRequested) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mFrameRequested = false;
+        }
+        mPendingInputTime = 0;
         releaseBitmap();
     }
 
     private void createBitmap() {
         if (mOffscreenBitmap != null) {
-            mOffscreenBitmap.recycle();
+            releaseBitmap(mOffscreenBitmap);
         }
-        mOffscreenBitmap = Bitmap.createBitmap(mModel.getWidth(), mModel.getHeight(), Bitmap.Config.ARGB_8888);
+        // Cleared by reset()
+        Bitmap.Config config = mSingleChannel ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888;
+        mOffscreenBitmap = acquireBitmap(mModel.getWidth(), mModel.getHeight(), config);
         mOffscreenCanvas = new Canvas(mOffscreenBitmap);
         initializePaint();
         reset();
@@ -150,44 +336,105 @@ public class DrawView extends View {
 
     // https://stackoverflow.com/a/7608516
     private void initializePaint() {
+        mPaint.setColor(Color.BLACK);
+        mPaint.setStyle(Paint.Style.STROKE);
         mPaint.setStrokeJoin(Paint.Join.ROUND);
         mPaint.setStrokeCap(Paint.Cap.ROUND);
         mPaint.setPathEffect(new CornerPathEffect(50));
         mPaint.setDither(true);
-        mPaint.setStrokeWidth(20);
+        mPaint.setStrokeWidth(STROKE_WIDTH);
         mPaint.setAntiAlias(true);
     }
 
+    private Bitmap acquireBitmap(int width, int height, Bitmap.Config config) {
+        if (mBufferPool != null) {
+            return mBufferPool.acquireBitmap(width, height, config);
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    private void releaseBitmap(Bitmap bitmap) {
+        if (mBufferPool != null) {
+            mBufferPool.releaseBitmap(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
     private void releaseBitmap() {
         if (mOffscreenBitmap != null) {
-            mOffscreenBitmap.recycle();
+            releaseBitmap(mOffscreenBitmap);
             mOffscreenBitmap = null;
             mOffscreenCanvas = null;
         }
+        releaseScaledBitmap();
         reset();
     }
 
     /**
-     * Get pixel data for tensorflow input.
+     * Get pixel data for tensorflow input. Allocates the returned array, see
+     * {@link #getPixelData(int, float[])}.
      */
     public float[] getPixelData(int size) {
+        float[] pixels = new float[size * size];
+        return getPixelData(size, pixels) ? pixels : null;
+    }
+
+    /**
+     * Scales the offscreen bitmap down to size x size pixels and converts them into input
+     * values. The scaled bitmap and its pixels are reused until {@link #onPause()}.
+     * <p />
+     *
+     * Not used by the recognition, which rasterizes the strokes of the model directly, see
+     * {@link org.literacyapp.handwriting_numbers.recognition.StrokeRasterizer}. Kept for callers
+     * which need the pixels as they are shown.
+     *
+     * @param out  receives size * size values
+     * @return false if there is no offscreen bitmap
+     */
+    public boolean getPixelData(int size, float[] out) {
         if (mOffscreenBitmap == null) {
-            return null;
+            return false;
         }
 
-        Bitmap mScaledBitmap = Bitmap.createScaledBitmap(mOffscreenBitmap, size, size, false);
-
-        int[] pixels = new int[size * size];
-        mScaledBitmap.getPixels(pixels, 0, size, 0, 0, size, size);
+        Bitmap.Config config = mOffscreenBitmap.getConfig();
+        if ((mScaledBitmap == null) || (mScaledBitmap.getWidth() != size) || (mScaledBitmap.getConfig() != config)) {
+            releaseScaledBitmap();
+            mScaledBitmap = acquireBitmap(size, size, config);
+            mScaledCanvas = new Canvas(mScaledBitmap);
+            if (config == Bitmap.Config.ALPHA_8) {
+                mScaledAlpha = new byte[mScaledBitmap.getByteCount()];
+                mScaledAlphaBuffer = ByteBuffer.wrap(mScaledAlpha);
+            } else {
+                mScaledPixels = new int[size * size];
+            }
+        }
 
-        float[] retPixels = new float[pixels.length];
-        for (int i = 0; i < pixels.length; ++i) {
-            // Set 0 for white and 255 for black pixel
-            int pix = pixels[i];
-            int b = pix & 0xff;
-            retPixels[i] = 0xff - b;
+        // Nearest neighbor like Bitmap.createScaledBitmap without filtering
+        mScaleMatrix.setScale(size / (float) mOffscreenBitmap.getWidth(), size / (float) mOffscreenBitmap.getHeight());
+        mScaledCanvas.drawBitmap(mOffscreenBitmap, mScaleMatrix, mScalePaint);
+
+        if (config == Bitmap.Config.ALPHA_8) {
+            // The coverage is the input value, no need to unpack colors
+            mScaledAlphaBuffer.rewind();
+            mScaledBitmap.copyPixelsToBuffer(mScaledAlphaBuffer);
+            PixelConversion.alphaToInput(mScaledAlpha, mScaledBitmap.getRowBytes(), size, size, out);
+        } else {
+            mScaledBitmap.getPixels(mScaledPixels, 0, size, 0, 0, size, size);
+            PixelConversion.argbToInput(mScaledPixels, out);
         }
+        return true;
+    }
 
-        return retPixels;
+    private void releaseScaledBitmap() {
+        if (mScaledBitmap == null) {
+            return;
+        }
+        releaseBitmap(mScaledBitmap);
+        mScaledBitmap = null;
+        mScaledCanvas = null;
+        mScaledAlpha = null;
+        mScaledAlphaBuffer = null;
+        mScaledPixels = null;
     }
 }
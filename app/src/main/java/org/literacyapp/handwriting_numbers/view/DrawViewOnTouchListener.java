@@ -8,19 +8,58 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.widget.Toast;
 
+import org.literacyapp.handwriting_numbers.BuildConfig;
 import org.literacyapp.handwriting_numbers.FinalActivity;
+import org.literacyapp.handwriting_numbers.ModelRegistry;
+import org.literacyapp.handwriting_numbers.metrics.Metrics;
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.DigitDecision;
+import org.literacyapp.handwriting_numbers.recognition.MnistPreprocessor;
+import org.literacyapp.handwriting_numbers.recognition.RecognitionPipeline;
+import org.literacyapp.handwriting_numbers.recording.AttemptLogWriter;
+import org.literacyapp.handwriting_numbers.recording.AttemptRecord;
 import org.literacyapp.handwriting_numbers.util.MediaPlayerHelper;
-import org.tensorflow.contrib.android.TensorFlowInferenceInterface;
 
 import static android.content.Intent.FLAG_ACTIVITY_NEW_TASK;
 
 /**
  * Created by sladomic on 05.05.17.
+ * <p />
+ *
+ * In speculative mode the drawing is also recognized while it is being drawn, at most once per
+ * speculation interval. The outputs are cached under the {@link DrawModel#getVersion()} they
+ * were computed for, so that ACTION_UP can decide immediately if the drawing has not changed
+ * since. The decision itself is only made after ACTION_UP.
+ * <p />
+ *
+ * The drawing is turned into the model input by a {@link RecognitionPipeline}, which splits
+ * numbers with more than one digit into digits. All of them are classified in one batch, so the
+ * latency is about that of a single digit.
+ * <p />
+ *
+ * Every decision is recorded in the attempt log, if one has been set. The strokes are copied
+ * into a pooled record and written on the thread of the log.
+ * <p />
+ *
+ * A correctly written number is reported to the {@link OnNumberWrittenListener}, if one has been
+ * set, so that the next round can reuse this listener with {@link #setNumberToWrite(int)}.
+ * Otherwise {@link FinalActivity} is started.
  */
 
-public class DrawViewOnTouchListener implements View.OnTouchListener {
+public class DrawViewOnTouchListener implements View.OnTouchListener, AsyncRecognizer.Callback {
+
+    public interface OnNumberWrittenListener {
+        /**
+         * Called on the UI thread when the drawing has been recognized as the number to write.
+         */
+        void onNumberWritten(int number);
+    }
+
     private int failedCounter = 0;
     private PointF mTmpPoint = new PointF();
+    // Screen, then model coordinates of the samples of a move event
+    private float[] mTouchPoints = new float[16 * 2];
+    private StrokeSimplifier mSimplifier = new StrokeSimplifier(StrokeSimplifier.DEFAULT_TOLERANCE);
 
     private float mLastX;
     private float mLastY;
@@ -28,31 +67,111 @@ public class DrawViewOnTouchListener implements View.OnTouchListener {
     private DrawView mDrawView;
     private DrawModel mModel;
 
-    private TensorFlowInferenceInterface inferenceInterface;
+    private AsyncRecognizer recognizer;
 
-    private int numberToWrite;
+    public static final long DEFAULT_SPECULATION_INTERVAL_MILLIS = 150;
 
-    private static final int INPUT_SIZE = 28;
-    private static final String INPUT_NAME = "input";
-    private static final String OUTPUT_NAME = "output";
-    // 1 channel because it's a grayscale image
-    private static final int CHANNELS = 1;
-    private static final boolean LOG_STATS = false;
-    private static final int OUTPUT_SIZE = 10;
-    private static final float THRESHOLD = 1.0f;
+    private boolean mSpeculative = true;
+    private long mSpeculationIntervalMillis = DEFAULT_SPECULATION_INTERVAL_MILLIS;
+    private long mLastSpeculationTime;
+
+    // The model versions are used as request ids
+    private long mSubmittedVersion = -1;
+    private long mCachedVersion = -1;
+    private float[] mCachedOutputs = new float[AsyncRecognizer.MAX_BATCH_SIZE * DigitClassifier.OUTPUT_SIZE];
+    private int mCachedDigitCount;
+    private boolean mDecisionPending;
+    private long mTouchUpTime;
+
+    private AttemptLogWriter mAttemptLog;
+    private OnNumberWrittenListener mOnNumberWrittenListener;
+    // Touches are ignored while disabled, e.g. during the celebration of a round
+    private boolean mEnabled = true;
+    // Start of the drawing which is being recognized, set by the first touch on an empty model
+    private long mAttemptStartTimeMillis;
+    private long mAttemptStartTime;
+
+    private RecognitionPipeline mPipeline = new RecognitionPipeline(DigitDecision.THRESHOLD);
+
+    private int numberToWrite;
 
     private Context context;
 
-    public DrawViewOnTouchListener(DrawView mDrawView, DrawModel mModel, TensorFlowInferenceInterface inferenceInterface, int numberToWrite, Context context) {
+    public DrawViewOnTouchListener(DrawView mDrawView, DrawModel mModel, AsyncRecognizer recognizer, int numberToWrite, Context context) {
         this.mDrawView = mDrawView;
         this.mModel = mModel;
-        this.inferenceInterface = inferenceInterface;
+        this.recognizer = recognizer;
+        this.recognizer.setCallback(this);
         this.numberToWrite = numberToWrite;
         this.context = context;
     }
 
+    /**
+     * Recognize the drawing in the background while it is being drawn.
+     */
+    public void setSpeculative(boolean speculative) {
+        mSpeculative = speculative;
+    }
+
+    /**
+     * Minimum time between two speculative recognitions during a stroke.
+     */
+    public void setSpeculationIntervalMillis(long speculationIntervalMillis) {
+        mSpeculationIntervalMillis = speculationIntervalMillis;
+    }
+
+    /**
+     * Largest distance in model coordinates between the stored strokes and the touch samples.
+     */
+    public void setSimplificationTolerance(float tolerance) {
+        mSimplifier.setTolerance(tolerance);
+    }
+
+    /**
+     * Score a digit needs to be recognized, see {@link ModelRegistry#getThreshold()}.
+     */
+    public void setThreshold(float threshold) {
+        if (threshold != mPipeline.getThreshold()) {
+            mPipeline = new RecognitionPipeline(threshold);
+        }
+    }
+
+    /**
+     * Records the attempts, null to stop recording.
+     */
+    public void setAttemptLog(AttemptLogWriter attemptLog) {
+        mAttemptLog = attemptLog;
+    }
+
+    /**
+     * Reports correctly written numbers to {@code listener} instead of starting
+     * {@link FinalActivity}, null to start it again.
+     */
+    public void setOnNumberWrittenListener(OnNumberWrittenListener listener) {
+        mOnNumberWrittenListener = listener;
+    }
+
+    /**
+     * Starts a new round with another number. The drawing should be cleared as well.
+     */
+    public void setNumberToWrite(int numberToWrite) {
+        this.numberToWrite = numberToWrite;
+        failedCounter = 0;
+        mDecisionPending = false;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled) {
+            mDecisionPending = false;
+        }
+    }
+
     @Override
     public boolean onTouch(View v, MotionEvent event) {
+        if (!mEnabled) {
+            return true;
+        }
         int action = event.getAction() & MotionEvent.ACTION_MASK;
 
         if (action == MotionEvent.ACTION_DOWN) {
@@ -71,46 +190,116 @@ public class DrawViewOnTouchListener implements View.OnTouchListener {
     }
 
     private void processTouchDown(MotionEvent event) {
+        if (mModel.getLineSize() == 0) {
+            mAttemptStartTimeMillis = System.currentTimeMillis();
+            mAttemptStartTime = System.nanoTime();
+        }
         mLastX = event.getX();
         mLastY = event.getY();
         mDrawView.calcPos(mLastX, mLastY, mTmpPoint);
         float lastConvX = mTmpPoint.x;
         float lastConvY = mTmpPoint.y;
-        mModel.startLine(lastConvX, lastConvY);
+        mSimplifier.startLine(mModel, lastConvX, lastConvY);
+        mDrawView.invalidateOnNextFrame(event.getEventTime());
+        mDecisionPending = false;
+        mLastSpeculationTime = event.getEventTime();
     }
 
     private void processTouchMove(MotionEvent event) {
+        // The samples which have been batched since the previous event, followed by the current one
+        int historySize = event.getHistorySize();
+        int count = historySize + 1;
+        if (mTouchPoints.length < count * 2) {
+            mTouchPoints = new float[count * 2];
+        }
+        for (int h = 0; h < historySize; h++) {
+            mTouchPoints[h * 2] = event.getHistoricalX(h);
+            mTouchPoints[h * 2 + 1] = event.getHistoricalY(h);
+        }
         float x = event.getX();
         float y = event.getY();
+        mTouchPoints[historySize * 2] = x;
+        mTouchPoints[historySize * 2 + 1] = y;
 
-        mDrawView.calcPos(x, y, mTmpPoint);
-        float newConvX = mTmpPoint.x;
-        float newConvY = mTmpPoint.y;
-        mModel.addLineElem(newConvX, newConvY);
+        mDrawView.calcPos(mTouchPoints, count);
+        mSimplifier.addPoints(mModel, mTouchPoints, count);
 
         mLastX = x;
         mLastY = y;
-        mDrawView.invalidate();
+        long oldestEventTime = (historySize > 0) ? event.getHistoricalEventTime(0) : event.getEventTime();
+        mDrawView.invalidateOnNextFrame(oldestEventTime);
+
+        if (mSpeculative && (event.getEventTime() - mLastSpeculationTime >= mSpeculationIntervalMillis)) {
+            mLastSpeculationTime = event.getEventTime();
+            submit(mModel.getVersion());
+        }
     }
 
     private void processTouchUp() {
-        mModel.endLine();
-        float pixels[] = mDrawView.getPixelData(INPUT_SIZE);
-
-        inferenceInterface.feed(INPUT_NAME, pixels, 1, INPUT_SIZE, INPUT_SIZE, CHANNELS);
-        inferenceInterface.run(new String[]{OUTPUT_NAME}, LOG_STATS);
-        float[] outputs = new float[OUTPUT_SIZE];
-        inferenceInterface.fetch(OUTPUT_NAME, outputs);
-
-        if (outputs.length > 0) {
-            int recognizedNumber = -1;
-            for (int i=0; i < outputs.length; i++){
-                if (outputs[i] >= THRESHOLD){
-                    recognizedNumber = i;
-                }
+        mSimplifier.endLine(mModel);
+        mTouchUpTime = System.nanoTime();
+        // The messages are built on every touch up, only in debug builds
+        if (BuildConfig.DEBUG) {
+            Log.d(getClass().getName(), "stroke points, samples: " + mSimplifier.getInputCount() + ", stored: " + mSimplifier.getOutputCount() + ", reduction: " + mSimplifier.getReductionRatio());
+            Log.d(getClass().getName(), "input to frame latency, average: " + mDrawView.getAverageInputLatencyMillis() + " ms, max: " + mDrawView.getMaxInputLatencyMillis() + " ms, frames: " + mDrawView.getInputFrameCount());
+        }
+        mDecisionPending = true;
+
+        long version = mModel.getVersion();
+        if (version == mCachedVersion) {
+            if (BuildConfig.DEBUG) {
+                Log.d(getClass().getName(), "speculative result matches, deciding immediately");
+            }
+            decide(mCachedOutputs, mCachedDigitCount);
+        } else if (version != mSubmittedVersion) {
+            submit(version);
+        }
+        // Otherwise the recognition of this version is already running
+    }
+
+    private void submit(long version) {
+        // Rasterize the strokes directly instead of scaling down the offscreen bitmap
+        long startTime = System.nanoTime();
+        int digitCount = mPipeline.prepare(mModel, numberToWrite);
+        Metrics.RASTERIZE.recordSince(startTime);
+        if (BuildConfig.DEBUG) {
+            MnistPreprocessor preprocessor = mPipeline.getPreprocessor();
+            Log.d(getClass().getName(), "preprocessed " + digitCount + " digits, last in " + (preprocessor.getLastNanos() / 1000) + " us, average: " + (preprocessor.getTotalNanos() / preprocessor.getCallCount() / 1000) + " us");
+        }
+
+        mSubmittedVersion = version;
+        recognizer.submit(version, mPipeline.getPixels(), digitCount);
+    }
+
+    @Override
+    public void onRecognized(long requestId, float[] outputs) {
+        if (requestId != mModel.getVersion()) {
+            // The drawing has changed in the meantime
+            return;
+        }
+        mCachedVersion = requestId;
+        System.arraycopy(outputs, 0, mCachedOutputs, 0, outputs.length);
+        mCachedDigitCount = outputs.length / DigitClassifier.OUTPUT_SIZE;
+
+        if (mDecisionPending) {
+            if (BuildConfig.DEBUG) {
+                Log.d(getClass().getName(), "recognized " + ((System.nanoTime() - mTouchUpTime) / 1000) + " us after touch up");
             }
+            decide(mCachedOutputs, mCachedDigitCount);
+        }
+    }
+
+    private void decide(float[] outputs, int digitCount) {
+        mDecisionPending = false;
+        long startTime = System.nanoTime();
+
+        if (digitCount > 0) {
+            int recognizedNumber = mPipeline.decide(outputs, digitCount);
             Log.i(getClass().getName(), "numberToWrite: " + numberToWrite + ", recognized number: " + recognizedNumber);
-            if (numberToWrite == recognizedNumber){
+            recordAttempt(outputs, digitCount * DigitClassifier.OUTPUT_SIZE, recognizedNumber);
+            if ((numberToWrite == recognizedNumber) && (mOnNumberWrittenListener != null)) {
+                mOnNumberWrittenListener.onNumberWritten(recognizedNumber);
+            } else if (numberToWrite == recognizedNumber){
                 Intent intent = new Intent(context, FinalActivity.class);
                 intent.addFlags(FLAG_ACTIVITY_NEW_TASK);
                 context.startActivity(intent);
@@ -120,10 +309,31 @@ public class DrawViewOnTouchListener implements View.OnTouchListener {
                     mModel.clear();
                     mDrawView.reset();
                     mDrawView.invalidate();
-                    MediaPlayerHelper.playLessonFailed(context);
+                    MediaPlayerHelper.playLessonFailed(context, null);
                     failedCounter = 0;
                 }
             }
         }
+        Metrics.DECIDE.recordSince(startTime);
+        Metrics.TOUCH_UP_TOTAL.recordSince(mTouchUpTime);
+    }
+
+    private void recordAttempt(float[] outputs, int outputCount, int recognizedNumber) {
+        if (mAttemptLog == null) {
+            return;
+        }
+        AttemptRecord record = mAttemptLog.obtain();
+        if (record == null) {
+            Log.w(getClass().getName(), "attempt not recorded: " + mAttemptLog);
+            return;
+        }
+        record.numberToWrite = numberToWrite;
+        record.recognizedNumber = recognizedNumber;
+        record.startTimeMillis = mAttemptStartTimeMillis;
+        record.touchUpOffsetMillis = (int) ((mTouchUpTime - mAttemptStartTime) / 1000000);
+        record.decisionOffsetMillis = (int) ((System.nanoTime() - mAttemptStartTime) / 1000000);
+        record.setStrokes(mModel);
+        record.setOutputs(outputs, outputCount);
+        mAttemptLog.submit(record);
     }
 }
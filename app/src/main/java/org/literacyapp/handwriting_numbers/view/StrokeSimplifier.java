@@ -0,0 +1,189 @@
+package org.literacyapp.handwriting_numbers.view;
+
+/**
+ * Simplifies strokes while they are drawn, before the points are stored in the
+ * {@link DrawModel}.
+ * <p />
+ *
+ * Samples closer than the tolerance to the last stored point are not stored. The remaining
+ * samples go through the streaming form of the Ramer-Douglas-Peucker test: the last stored
+ * point of the line is moved along to the newest sample as long as all samples since the
+ * previous stored point (the anchor) stay within the tolerance of the segment from the anchor.
+ * Only when a sample would leave that corridor, or the window of samples is full, the last
+ * point is kept and a new one is started. The stored line therefore stays within the tolerance
+ * of every sample.
+ * <p />
+ *
+ * An instance is not thread-safe and simplifies one line at a time.
+ */
+public class StrokeSimplifier {
+
+    // In model coordinates, the pen is DrawView.STROKE_WIDTH wide
+    public static final float DEFAULT_TOLERANCE = 1f;
+
+    public static final int MAX_WINDOW = 64;
+
+    private float tolerance;
+
+    private float mAnchorX;
+    private float mAnchorY;
+    // The last point of the line in the model, which may still be moved
+    private float mTailX;
+    private float mTailY;
+    private boolean mHasTail;
+    // Samples since the anchor, including the ones which have not been stored
+    private final float[] mWindow = new float[MAX_WINDOW * 2];
+    private int mWindowSize;
+    // Last sample, if it has not been stored
+    private float mPendingX;
+    private float mPendingY;
+    private boolean mHasPending;
+
+    private long mInputCount;
+    private long mOutputCount;
+
+    public StrokeSimplifier(float tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public float getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * 0 only drops samples at the same position as the last stored point.
+     */
+    public void setTolerance(float tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public void startLine(DrawModel model, float x, float y) {
+        model.startLine(x, y);
+        mAnchorX = x;
+        mAnchorY = y;
+        mHasTail = false;
+        mWindowSize = 0;
+        mHasPending = false;
+        mInputCount++;
+        mOutputCount++;
+    }
+
+    /**
+     * @param points  interleaved x/y model coordinates
+     * @param count   number of points (not floats)
+     */
+    public void addPoints(DrawModel model, float[] points, int count) {
+        for (int i = 0; i < count; i++) {
+            addPoint(model, points[i * 2], points[i * 2 + 1]);
+        }
+    }
+
+    public void addPoint(DrawModel model, float x, float y) {
+        mInputCount++;
+        float lastX = mHasTail ? mTailX : mAnchorX;
+        float lastY = mHasTail ? mTailY : mAnchorY;
+        float dx = x - lastX;
+        float dy = y - lastY;
+        if ((dx * dx + dy * dy <= tolerance * tolerance) && (mWindowSize < MAX_WINDOW)) {
+            // Too close to be stored, but the following segments still have to pass near it
+            addToWindow(x, y);
+            mPendingX = x;
+            mPendingY = y;
+            mHasPending = true;
+            return;
+        }
+        store(model, x, y);
+    }
+
+    /**
+     * Stores the last sample, so that the line ends where the stroke ended.
+     */
+    public void endLine(DrawModel model) {
+        if (mHasPending) {
+            store(model, mPendingX, mPendingY);
+        }
+        model.endLine();
+    }
+
+    private void store(DrawModel model, float x, float y) {
+        mHasPending = false;
+        if (mHasTail && (mWindowSize < MAX_WINDOW) && fits(x, y)) {
+            // Extend the last segment to the new sample
+            addToWindow(x, y);
+            model.setLastLineElem(x, y);
+            mTailX = x;
+            mTailY = y;
+            return;
+        }
+
+        if (mHasTail) {
+            // Keep the last point, it becomes the anchor of the next segment
+            mAnchorX = mTailX;
+            mAnchorY = mTailY;
+        }
+        mWindowSize = 0;
+        addToWindow(x, y);
+        model.addLineElem(x, y);
+        mTailX = x;
+        mTailY = y;
+        mHasTail = true;
+        mOutputCount++;
+    }
+
+    private void addToWindow(float x, float y) {
+        if (mWindowSize < MAX_WINDOW) {
+            mWindow[mWindowSize * 2] = x;
+            mWindow[mWindowSize * 2 + 1] = y;
+            mWindowSize++;
+        }
+    }
+
+    /**
+     * Whether all samples in the window are within the tolerance of the segment from the anchor
+     * to (x, y).
+     */
+    private boolean fits(float x, float y) {
+        float segmentX = x - mAnchorX;
+        float segmentY = y - mAnchorY;
+        float lengthSquared = segmentX * segmentX + segmentY * segmentY;
+        float toleranceSquared = tolerance * tolerance;
+        for (int i = 0; i < mWindowSize; i++) {
+            float px = mWindow[i * 2] - mAnchorX;
+            float py = mWindow[i * 2 + 1] - mAnchorY;
+            float t = (lengthSquared > 0) ? (px * segmentX + py * segmentY) / lengthSquared : 0;
+            t = Math.max(0, Math.min(1, t));
+            float distanceX = px - t * segmentX;
+            float distanceY = py - t * segmentY;
+            if (distanceX * distanceX + distanceY * distanceY > toleranceSquared) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Number of samples passed in since the counters were reset.
+     */
+    public long getInputCount() {
+        return mInputCount;
+    }
+
+    /**
+     * Number of points stored in the model since the counters were reset.
+     */
+    public long getOutputCount() {
+        return mOutputCount;
+    }
+
+    /**
+     * Samples per stored point, e.g. 4 if only every fourth sample has been stored.
+     */
+    public float getReductionRatio() {
+        return (mOutputCount > 0) ? mInputCount / (float) mOutputCount : 1;
+    }
+
+    public void resetCounters() {
+        mInputCount = 0;
+        mOutputCount = 0;
+    }
+}
@@ -0,0 +1,61 @@
+package org.literacyapp.handwriting_numbers;
+
+import org.junit.Test;
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+
+import static org.junit.Assert.*;
+
+public class ModelRegistryTest {
+
+    private static class FailingClassifier implements DigitClassifier {
+        FailingClassifier() {
+            throw new IllegalStateException("Model missing");
+        }
+
+        @Override
+        public void classify(float[] pixels, float[] outputs) {
+        }
+
+        @Override
+        public void classify(float[] pixels, int batchSize, float[] outputs) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class BlankClassifier implements DigitClassifier {
+        @Override
+        public void classify(float[] pixels, float[] outputs) {
+        }
+
+        @Override
+        public void classify(float[] pixels, int batchSize, float[] outputs) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void await_returnsNullAfterFailedLoadUntilAcquiredAgain() throws Exception {
+        final boolean[] failing = {true};
+        ModelRegistry registry = new ModelRegistry(null, null, 0) {
+            @Override
+            DigitClassifier createBackend() {
+                return failing[0] ? new FailingClassifier() : new BlankClassifier();
+            }
+        };
+
+        registry.acquire();
+        assertNull(registry.await());
+        // The failure is not retried by every recognition
+        assertNull(registry.await());
+
+        failing[0] = false;
+        registry.acquire();
+        assertNotNull(registry.await());
+    }
+}
@@ -0,0 +1,89 @@
+package org.literacyapp.handwriting_numbers.metrics;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketIndex_matchesLowerBounds() {
+        for (int i = 1; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lowerBound = LatencyHistogram.bucketLowerBound(i);
+            assertTrue(lowerBound > LatencyHistogram.bucketLowerBound(i - 1));
+            assertEquals(i, LatencyHistogram.bucketIndex(lowerBound));
+            assertEquals(i - 1, LatencyHistogram.bucketIndex(lowerBound - 1));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void bucketWidth_isAtMostAnEighth() {
+        for (int i = LatencyHistogram.SUB_BUCKET_COUNT; i < LatencyHistogram.BUCKET_COUNT - 1; i++) {
+            long lowerBound = LatencyHistogram.bucketLowerBound(i);
+            long width = LatencyHistogram.bucketLowerBound(i + 1) - lowerBound;
+            assertTrue(width * 8 <= lowerBound);
+        }
+    }
+
+    @Test
+    public void snapshot_percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1000000L);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(100000000L, snapshot.getMax());
+        assertEquals(50500000L, snapshot.getMean());
+        assertEquals(50e6, snapshot.getValueAtPercentile(50), 50e6 / 8);
+        assertEquals(99e6, snapshot.getValueAtPercentile(99), 99e6 / 8);
+        assertEquals(100000000L, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void record_fromManyThreads() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        histogram.record(i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(400000, snapshot.getCount());
+        assertEquals(99999, snapshot.getMax());
+        assertEquals(4L * 99999 * 100000 / 2, snapshot.getSum());
+    }
+
+    @Test
+    public void write_listsNonEmptyBuckets() throws Exception {
+        Metrics.DECIDE.reset();
+        Metrics.DECIDE.record(1000);
+        Metrics.DECIDE.record(1000);
+
+        StringWriter writer = new StringWriter();
+        Metrics.write(writer, Collections.singletonMap("device", "Test Tablet"));
+        String text = writer.toString();
+
+        assertTrue(text.startsWith("metrics 1\nattribute device Test_Tablet\n"));
+        assertTrue(text.contains("\nhistogram decide count 2 sum_ns 2000 max_ns 1000 p50_ns 1000 p90_ns 1000 p99_ns 1000\nbucket decide 960 2\n"));
+        assertTrue(text.endsWith("end\n"));
+        Metrics.DECIDE.reset();
+    }
+}
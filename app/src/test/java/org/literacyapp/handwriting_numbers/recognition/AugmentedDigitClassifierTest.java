@@ -0,0 +1,155 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AugmentedDigitClassifierTest {
+
+    /**
+     * Scores the first variant as a 3 and all other variants as a 5, and keeps the batches.
+     */
+    private static class BatchClassifier implements DigitClassifier {
+        int batchCount;
+        int lastBatchSize;
+        float[] lastBatch;
+
+        @Override
+        public void classify(float[] pixels, float[] outputs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void classify(float[] pixels, int batchSize, float[] outputs) {
+            batchCount++;
+            lastBatchSize = batchSize;
+            lastBatch = pixels.clone();
+            for (int b = 0; b < batchSize; b++) {
+                for (int i = 0; i < OUTPUT_SIZE; i++) {
+                    outputs[b * OUTPUT_SIZE + i] = 0;
+                }
+                outputs[b * OUTPUT_SIZE + ((b == 0) ? 3 : 5)] = (b == 0) ? 1f : 0.5f;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Is only sure that a drawing is a 1 if it has full ink in the center, otherwise it leans to
+     * a 1 but might also see a 7.
+     */
+    private static class CenteredClassifier implements DigitClassifier {
+        @Override
+        public void classify(float[] pixels, float[] outputs) {
+            classify(pixels, 1, outputs);
+        }
+
+        @Override
+        public void classify(float[] pixels, int batchSize, float[] outputs) {
+            for (int b = 0; b < batchSize; b++) {
+                for (int i = 0; i < OUTPUT_SIZE; i++) {
+                    outputs[b * OUTPUT_SIZE + i] = 0;
+                }
+                boolean centered = pixels[b * 28 * 28 + 14 * 28 + 14] >= 255;
+                outputs[b * OUTPUT_SIZE + 1] = centered ? 1f : 0.6f;
+                outputs[b * OUTPUT_SIZE + 7] = centered ? 0f : 0.4f;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static float[] drawing() {
+        float[] pixels = new float[28 * 28];
+        for (int y = 8; y < 20; y++) {
+            pixels[y * 28 + 14] = 255;
+        }
+        return pixels;
+    }
+
+    @Test
+    public void classify_runsAllVariantsInOneBatch() throws Exception {
+        BatchClassifier delegate = new BatchClassifier();
+        AugmentedDigitClassifier classifier = new AugmentedDigitClassifier(delegate, 9, AugmentedDigitClassifier.Combine.MEAN);
+        float[] pixels = drawing();
+
+        classifier.classify(pixels, new float[10]);
+
+        assertEquals(1, delegate.batchCount);
+        assertEquals(9, delegate.lastBatchSize);
+        // The first variant is the drawing itself, the second is shifted one pixel to the right
+        for (int i = 0; i < 28 * 28; i++) {
+            assertEquals(pixels[i], delegate.lastBatch[i], 0f);
+        }
+        assertEquals(255f, delegate.lastBatch[28 * 28 + 10 * 28 + 15], 0f);
+        assertEquals(0f, delegate.lastBatch[28 * 28 + 10 * 28 + 14], 0f);
+    }
+
+    @Test
+    public void classify_runsTheVariantsOfAllDrawingsInOneBatch() throws Exception {
+        BatchClassifier delegate = new BatchClassifier();
+        AugmentedDigitClassifier classifier = new AugmentedDigitClassifier(delegate, 4, AugmentedDigitClassifier.Combine.MEAN);
+        float[] pixels = new float[3 * 28 * 28];
+        System.arraycopy(drawing(), 0, pixels, 2 * 28 * 28, 28 * 28);
+        float[] outputs = new float[3 * 10];
+
+        classifier.classify(pixels, 3, outputs);
+
+        assertEquals(1, delegate.batchCount);
+        assertEquals(12, delegate.lastBatchSize);
+        // The first variant of the third drawing is the drawing itself
+        for (int i = 0; i < 28 * 28; i++) {
+            assertEquals(pixels[2 * 28 * 28 + i], delegate.lastBatch[8 * 28 * 28 + i], 0f);
+        }
+        // Only the very first variant of the batch is scored as a 3
+        assertEquals(0.25f, outputs[3], 0.0001f);
+        assertEquals(0f, outputs[10 + 3], 0f);
+        assertEquals(0.5f, outputs[20 + 5], 0.0001f);
+    }
+
+    @Test
+    public void classify_acceptsAShiftedDrawing() throws Exception {
+        // A 1 which is one pixel left of the center
+        float[] pixels = new float[28 * 28];
+        for (int y = 6; y < 22; y++) {
+            pixels[y * 28 + 13] = 255;
+        }
+        float[] outputs = new float[10];
+
+        new CenteredClassifier().classify(pixels, outputs);
+        assertEquals(DigitDecision.NONE, DigitDecision.recognize(outputs, DigitDecision.THRESHOLD));
+
+        for (AugmentedDigitClassifier.Combine combine : AugmentedDigitClassifier.Combine.values()) {
+            new AugmentedDigitClassifier(new CenteredClassifier(), 9, combine).classify(pixels, outputs);
+            assertEquals(combine.name(), 1, DigitDecision.recognize(outputs, combine.getThreshold()));
+        }
+    }
+
+    @Test
+    public void classify_combinesScores() throws Exception {
+        float[] mean = new float[10];
+        float[] max = new float[10];
+        float[] vote = new float[10];
+
+        new AugmentedDigitClassifier(new BatchClassifier(), 4, AugmentedDigitClassifier.Combine.MEAN).classify(drawing(), mean);
+        new AugmentedDigitClassifier(new BatchClassifier(), 4, AugmentedDigitClassifier.Combine.MAX).classify(drawing(), max);
+        new AugmentedDigitClassifier(new BatchClassifier(), 4, AugmentedDigitClassifier.Combine.VOTE).classify(drawing(), vote);
+
+        assertEquals(0.25f, mean[3], 0.0001f);
+        assertEquals(0.375f, mean[5], 0.0001f);
+        assertEquals(1f, max[3], 0f);
+        assertEquals(0.5f, max[5], 0f);
+        assertEquals(0.25f, vote[3], 0.0001f);
+        assertEquals(0.75f, vote[5], 0.0001f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsTooLargeBatches() throws Exception {
+        new AugmentedDigitClassifier(new BatchClassifier(), AugmentedDigitClassifier.MAX_BATCH_SIZE + 1, AugmentedDigitClassifier.Combine.MEAN);
+    }
+}
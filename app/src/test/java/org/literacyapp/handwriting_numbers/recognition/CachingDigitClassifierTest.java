@@ -0,0 +1,101 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CachingDigitClassifierTest {
+
+    /**
+     * Returns the value of the first pixel as the score of every digit.
+     */
+    private static class CountingClassifier implements DigitClassifier {
+        int classifyCount;
+        boolean closed;
+
+        @Override
+        public void classify(float[] pixels, float[] outputs) {
+            classifyCount++;
+            for (int i = 0; i < OUTPUT_SIZE; i++) {
+                outputs[i] = pixels[0];
+            }
+        }
+
+        @Override
+        public void classify(float[] pixels, int batchSize, float[] outputs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static float[] input(float firstPixel) {
+        float[] pixels = new float[DigitClassifier.INPUT_SIZE * DigitClassifier.INPUT_SIZE];
+        pixels[0] = firstPixel;
+        pixels[100] = 255;
+        return pixels;
+    }
+
+    @Test
+    public void classify_repeatedInputIsAnsweredFromCache() throws Exception {
+        CountingClassifier delegate = new CountingClassifier();
+        CachingDigitClassifier classifier = new CachingDigitClassifier(delegate, 4);
+        float[] outputs = new float[DigitClassifier.OUTPUT_SIZE];
+
+        classifier.classify(input(64), outputs);
+        outputs[0] = 0;
+        classifier.classify(input(64), outputs);
+
+        assertEquals(1, delegate.classifyCount);
+        assertEquals(64f, outputs[0], 0f);
+        assertEquals(1, classifier.getHitCount());
+        assertEquals(1, classifier.getMissCount());
+    }
+
+    @Test
+    public void classify_nearlyIdenticalInputsShareAnEntry() throws Exception {
+        CountingClassifier delegate = new CountingClassifier();
+        CachingDigitClassifier classifier = new CachingDigitClassifier(delegate, 4);
+        float[] outputs = new float[DigitClassifier.OUTPUT_SIZE];
+
+        classifier.classify(input(64), outputs);
+        classifier.classify(input(65), outputs);
+        classifier.classify(input(128), outputs);
+
+        assertEquals(2, delegate.classifyCount);
+        assertEquals(1, classifier.getHitCount());
+    }
+
+    @Test
+    public void classify_evictsLeastRecentlyUsed() throws Exception {
+        CountingClassifier delegate = new CountingClassifier();
+        CachingDigitClassifier classifier = new CachingDigitClassifier(delegate, 2);
+        float[] outputs = new float[DigitClassifier.OUTPUT_SIZE];
+
+        classifier.classify(input(16), outputs);
+        classifier.classify(input(32), outputs);
+        // 16 becomes the most recently used, so 32 is evicted by 48
+        classifier.classify(input(16), outputs);
+        classifier.classify(input(48), outputs);
+        classifier.classify(input(16), outputs);
+        classifier.classify(input(32), outputs);
+
+        assertEquals(4, delegate.classifyCount);
+        assertEquals(2, classifier.getHitCount());
+        assertEquals(2, classifier.getEvictionCount());
+        assertEquals(2, classifier.getSize());
+    }
+
+    @Test
+    public void close_closesDelegate() throws Exception {
+        CountingClassifier delegate = new CountingClassifier();
+        CachingDigitClassifier classifier = new CachingDigitClassifier(delegate, 2);
+
+        classifier.close();
+
+        assertTrue(delegate.closed);
+    }
+}
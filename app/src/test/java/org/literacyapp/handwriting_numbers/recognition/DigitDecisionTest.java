@@ -0,0 +1,29 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DigitDecisionTest {
+
+    @Test
+    public void recognizeNumber_composesDigits() throws Exception {
+        float[] outputs = new float[3 * 10];
+        outputs[2] = 1;
+        outputs[10 + 0] = 1;
+        outputs[20 + 7] = 1;
+
+        assertEquals(207, DigitDecision.recognizeNumber(outputs, 3, 10, 1f));
+        assertEquals(20, DigitDecision.recognizeNumber(outputs, 2, 10, 1f));
+    }
+
+    @Test
+    public void recognizeNumber_noneIfADigitIsMissing() throws Exception {
+        float[] outputs = new float[2 * 10];
+        outputs[1] = 1;
+        outputs[10 + 5] = 0.5f;
+
+        assertEquals(DigitDecision.NONE, DigitDecision.recognizeNumber(outputs, 2, 10, 1f));
+        assertEquals(DigitDecision.NONE, DigitDecision.recognizeNumber(outputs, 0, 10, 1f));
+    }
+}
@@ -0,0 +1,146 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JavaDigitClassifierTest {
+
+    @Test
+    public void classify_denseLayerPicksBrightestRow() throws Exception {
+        // Output i is the sum of row i of the 28x28 input, rows 10+ are ignored
+        float[] weights = new float[10 * 28 * 28];
+        for (int o = 0; o < 10; o++) {
+            for (int x = 0; x < 28; x++) {
+                weights[o * 28 * 28 + o * 28 + x] = 1;
+            }
+        }
+        byte[] weightFile = new WeightFileWriter(28, 28, 1)
+                .dense(10, weights, new float[10])
+                .toByteArray();
+        JavaDigitClassifier classifier = new JavaDigitClassifier(ByteBuffer.wrap(weightFile));
+        float[] pixels = new float[28 * 28];
+        pixels[3 * 28 + 5] = 255;
+        float[] outputs = new float[10];
+
+        classifier.classify(pixels, outputs);
+
+        assertArrayEquals(new float[]{0, 0, 0, 255, 0, 0, 0, 0, 0, 0}, outputs, 0f);
+    }
+
+    @Test
+    public void classify_convPoolDenseSoftmax() throws Exception {
+        // A 3x3 kernel which reads the right neighbour, followed by relu, 2x2 max pooling and
+        // a dense layer which reads one pooled value per output
+        float[] kernel = new float[9];
+        kernel[1 * 3 + 2] = 1;
+        float[] weights = new float[10 * 14 * 14];
+        for (int o = 0; o < 10; o++) {
+            weights[o * 14 * 14 + o] = 1;
+        }
+        byte[] weightFile = new WeightFileWriter(28, 28, 1)
+                .conv(1, 3, kernel, new float[]{-1})
+                .relu()
+                .maxPool(2)
+                .dense(10, weights, new float[10])
+                .softmax()
+                .toByteArray();
+        JavaDigitClassifier classifier = new JavaDigitClassifier(ByteBuffer.wrap(weightFile));
+        float[] pixels = new float[28 * 28];
+        // Shows up at (0, 14) after the convolution, which is pooled into cell (0, 7)
+        pixels[15] = 3;
+        float[] outputs = new float[10];
+
+        classifier.classify(pixels, outputs);
+
+        float sum = 0;
+        for (int i = 0; i < 10; i++) {
+            sum += outputs[i];
+            if (i != 7) {
+                assertTrue(outputs[7] > outputs[i]);
+            }
+        }
+        assertEquals(1f, sum, 0.0001f);
+        // exp(2) / (exp(2) + 9)
+        assertEquals(0.4509f, outputs[7], 0.0001f);
+    }
+
+    @Test
+    public void classify_quantizedLayersFollowFloatLayers() throws Exception {
+        Random random = new Random(7);
+        float[] convWeights = randomValues(random, 8 * 3 * 3);
+        float[] convBias = randomValues(random, 8);
+        float[] denseWeights = randomValues(random, 10 * 14 * 14 * 8);
+        float[] denseBias = randomValues(random, 10);
+        JavaDigitClassifier floatClassifier = new JavaDigitClassifier(ByteBuffer.wrap(new WeightFileWriter(28, 28, 1)
+                .conv(8, 3, convWeights, convBias)
+                .relu()
+                .maxPool(2)
+                .dense(10, denseWeights, denseBias)
+                .toByteArray()));
+        JavaDigitClassifier quantizedClassifier = new JavaDigitClassifier(ByteBuffer.wrap(new WeightFileWriter(28, 28, 1)
+                .quantizedConv(8, 3, convWeights, convBias)
+                .relu()
+                .maxPool(2)
+                .quantizedDense(10, denseWeights, denseBias)
+                .toByteArray()));
+        float[] pixels = new float[28 * 28];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextFloat() * 255;
+        }
+        float[] expected = new float[10];
+        float[] actual = new float[10];
+
+        floatClassifier.classify(pixels, expected);
+        quantizedClassifier.classify(pixels, actual);
+
+        float max = 0;
+        for (float value : expected) {
+            max = Math.max(max, Math.abs(value));
+        }
+        // Two int8 layers, each off by about 1% of the largest value
+        assertArrayEquals(expected, actual, max * 0.05f);
+    }
+
+    @Test
+    public void classify_batchMatchesSingleCalls() throws Exception {
+        Random random = new Random(3);
+        JavaDigitClassifier classifier = new JavaDigitClassifier(ByteBuffer.wrap(new WeightFileWriter(28, 28, 1)
+                .dense(10, randomValues(random, 10 * 28 * 28), randomValues(random, 10))
+                .softmax()
+                .toByteArray()));
+        float[] batch = new float[3 * 28 * 28];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = random.nextFloat();
+        }
+        float[] batchOutputs = new float[3 * 10];
+
+        classifier.classify(batch, 3, batchOutputs);
+
+        for (int b = 0; b < 3; b++) {
+            float[] pixels = new float[28 * 28];
+            System.arraycopy(batch, b * 28 * 28, pixels, 0, pixels.length);
+            float[] outputs = new float[10];
+            classifier.classify(pixels, outputs);
+            for (int i = 0; i < 10; i++) {
+                assertEquals(outputs[i], batchOutputs[b * 10 + i], 0f);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsOtherFiles() throws Exception {
+        new JavaDigitClassifier(ByteBuffer.wrap(new byte[64]));
+    }
+
+    private static float[] randomValues(Random random, int count) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,115 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MnistPreprocessorTest {
+
+    @Test
+    public void process_blankStaysBlank() throws Exception {
+        MnistPreprocessor preprocessor = new MnistPreprocessor(112, 112);
+        float[] out = new float[28 * 28];
+        out[0] = 1;
+
+        preprocessor.process(new float[112 * 112], out);
+
+        for (float value : out) {
+            assertEquals(0f, value, 0f);
+        }
+        assertEquals(1, preprocessor.getCallCount());
+    }
+
+    @Test
+    public void process_smallDrawingIsScaledAndCentered() throws Exception {
+        // A 40x20 block in the top left corner
+        float[] source = new float[112 * 112];
+        for (int y = 2; y < 42; y++) {
+            for (int x = 3; x < 23; x++) {
+                source[y * 112 + x] = 255;
+            }
+        }
+        MnistPreprocessor preprocessor = new MnistPreprocessor(112, 112);
+        float[] out = new float[28 * 28];
+
+        preprocessor.process(source, out);
+
+        // The longer side fills the 20 pixel box, the aspect ratio is kept
+        int minX = 28, maxX = -1, minY = 28, maxY = -1;
+        for (int y = 0; y < 28; y++) {
+            for (int x = 0; x < 28; x++) {
+                if (out[y * 28 + x] > 0) {
+                    assertEquals(255f, out[y * 28 + x], 0.01f);
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        assertEquals(20, maxY - minY + 1);
+        assertEquals(10, maxX - minX + 1);
+        assertEquals(4, minY);
+        assertEquals(9, minX);
+    }
+
+    @Test
+    public void process_tapIsNotBlownUp() throws Exception {
+        // An 8x8 dot, much smaller than a quarter of the source
+        float[] source = new float[112 * 112];
+        for (int y = 60; y < 68; y++) {
+            for (int x = 30; x < 38; x++) {
+                source[y * 112 + x] = 255;
+            }
+        }
+        MnistPreprocessor preprocessor = new MnistPreprocessor(112, 112);
+        float[] out = new float[28 * 28];
+
+        preprocessor.process(source, out);
+
+        // Scaled like a drawing spanning 28 pixels, i.e. to 8 * 20 / 28 pixels
+        int minX = 28, maxX = -1, minY = 28, maxY = -1;
+        for (int y = 0; y < 28; y++) {
+            for (int x = 0; x < 28; x++) {
+                if (out[y * 28 + x] > 0) {
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        assertEquals(6, maxX - minX + 1);
+        assertEquals(6, maxY - minY + 1);
+        assertEquals(11, minX);
+        assertEquals(11, minY);
+    }
+
+    @Test
+    public void process_centersByCenterOfMass() throws Exception {
+        // A vertical line which is twice as thick in its lower half
+        float[] source = new float[112 * 112];
+        for (int y = 0; y < 40; y++) {
+            source[y * 112 + 50] = 255;
+        }
+        for (int y = 20; y < 40; y++) {
+            source[y * 112 + 51] = 255;
+        }
+        MnistPreprocessor preprocessor = new MnistPreprocessor(112, 112);
+        float[] out = new float[28 * 28];
+
+        preprocessor.process(source, out);
+
+        float mass = 0, massX = 0, massY = 0;
+        for (int y = 0; y < 28; y++) {
+            for (int x = 0; x < 28; x++) {
+                float value = out[y * 28 + x];
+                mass += value;
+                massX += value * (x + 0.5f);
+                massY += value * (y + 0.5f);
+            }
+        }
+        assertEquals(14f, massX / mass, 0.5f);
+        assertEquals(14f, massY / mass, 0.5f);
+    }
+}
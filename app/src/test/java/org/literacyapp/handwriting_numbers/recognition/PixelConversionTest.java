@@ -0,0 +1,32 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PixelConversionTest {
+
+    @Test
+    public void argbToInput_invertsBlue() throws Exception {
+        int[] pixels = {0xffffffff, 0xff000000, 0xff808080};
+        float[] out = new float[3];
+
+        PixelConversion.argbToInput(pixels, out);
+
+        assertArrayEquals(new float[]{0, 255, 127}, out, 0f);
+    }
+
+    @Test
+    public void alphaToInput_skipsRowPadding() throws Exception {
+        // 3x2 pixels in rows of 4 bytes, the padding must not be read
+        byte[] alpha = {
+                0, (byte) 255, (byte) 128, 99,
+                1, 2, 3, 99
+        };
+        float[] out = new float[6];
+
+        PixelConversion.alphaToInput(alpha, 4, 3, 2, out);
+
+        assertArrayEquals(new float[]{0, 255, 128, 1, 2, 3}, out, 0f);
+    }
+}
@@ -0,0 +1,70 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.junit.Test;
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RecognitionPipelineTest {
+
+    private static final int INPUT_LENGTH = RecognitionPipeline.INPUT_LENGTH;
+
+    private final RecognitionPipeline pipeline = new RecognitionPipeline(DigitDecision.THRESHOLD);
+
+    @Test
+    public void prepare_segmentsOnlyNumbersWithMoreThanOneDigit() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        addLine(model, 70, 60, 70, 220);
+        addLine(model, 150, 60, 230, 60, 230, 220, 150, 220, 150, 60);
+
+        assertEquals(2, pipeline.prepare(model, 10));
+        float[] ten = Arrays.copyOf(pipeline.getPixels(), 2 * INPUT_LENGTH);
+
+        assertEquals(1, pipeline.prepare(model, 1));
+        float[] whole = Arrays.copyOf(pipeline.getPixels(), INPUT_LENGTH);
+
+        // Each digit is centered on its own, so the first one differs from the whole drawing
+        assertFalse(Arrays.equals(whole, Arrays.copyOf(ten, INPUT_LENGTH)));
+        assertTrue(sum(ten, 0) > 0);
+        assertTrue(sum(ten, INPUT_LENGTH) > 0);
+    }
+
+    @Test
+    public void prepare_tooManyDigitsAreOneDrawing() throws Exception {
+        DrawModel model = new DrawModel(560, 280);
+        for (int digit = 0; digit <= RecognitionPipeline.MAX_DIGITS; digit++) {
+            float x = 40 + digit * 100;
+            addLine(model, x, 60, x, 220);
+        }
+
+        assertEquals(1, pipeline.prepare(model, 11111));
+    }
+
+    @Test
+    public void decide_usesTheThreshold() throws Exception {
+        float[] outputs = new float[2 * DigitClassifier.OUTPUT_SIZE];
+        outputs[1] = 0.6f;
+        outputs[10 + 2] = 0.6f;
+
+        assertEquals(DigitDecision.NONE, pipeline.decide(outputs, 2));
+        assertEquals(12, new RecognitionPipeline(0.5f).decide(outputs, 2));
+    }
+
+    private static float sum(float[] pixels, int offset) {
+        float sum = 0;
+        for (int i = offset; i < offset + INPUT_LENGTH; i++) {
+            sum += pixels[i];
+        }
+        return sum;
+    }
+
+    private static void addLine(DrawModel model, float... points) {
+        model.startLine(points[0], points[1]);
+        for (int i = 2; i < points.length; i += 2) {
+            model.addLineElem(points[i], points[i + 1]);
+        }
+        model.endLine();
+    }
+}
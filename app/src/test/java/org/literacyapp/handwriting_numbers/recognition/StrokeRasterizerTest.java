@@ -0,0 +1,83 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.junit.Test;
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+
+import static org.junit.Assert.*;
+
+public class StrokeRasterizerTest {
+
+    @Test
+    public void rasterize_emptyModelIsBlank() throws Exception {
+        StrokeRasterizer rasterizer = new StrokeRasterizer(28, 28, 20);
+        float[] out = new float[28 * 28];
+        out[0] = 1;
+
+        rasterizer.rasterize(new DrawModel(280, 280), out);
+
+        for (float value : out) {
+            assertEquals(0f, value, 0f);
+        }
+    }
+
+    @Test
+    public void rasterize_horizontalLine() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        model.startLine(40, 145);
+        model.addLineElem(240, 145);
+        model.endLine();
+        StrokeRasterizer rasterizer = new StrokeRasterizer(28, 28, 20);
+        float[] out = new float[28 * 28];
+
+        rasterizer.rasterize(model, out);
+
+        // The line is centered on row 14 and is 2 pixels wide after scaling down by 10
+        for (int x = 5; x < 23; x++) {
+            assertEquals(StrokeRasterizer.INK, out[14 * 28 + x], 0f);
+            assertEquals(0f, out[10 * 28 + x], 0f);
+            assertEquals(0f, out[18 * 28 + x], 0f);
+        }
+        assertEquals(0f, out[14 * 28], 0f);
+        assertEquals(0f, out[14 * 28 + 27], 0f);
+    }
+
+    @Test
+    public void rasterize_thickerStrokeCoversMore() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        model.startLine(140, 40);
+        model.addLineElem(140, 240);
+        model.endLine();
+        float[] thin = new float[28 * 28];
+        float[] thick = new float[28 * 28];
+
+        new StrokeRasterizer(28, 28, 10).rasterize(model, thin);
+        new StrokeRasterizer(28, 28, 40).rasterize(model, thick);
+
+        assertTrue(sum(thick) > sum(thin) * 2);
+        for (int i = 0; i < thin.length; i++) {
+            assertTrue(thin[i] >= 0 && thin[i] <= StrokeRasterizer.INK);
+            assertTrue(thick[i] >= thin[i]);
+        }
+    }
+
+    @Test
+    public void rasterize_singleTapDrawsDot() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        model.startLine(145, 145);
+        model.endLine();
+        float[] out = new float[28 * 28];
+
+        new StrokeRasterizer(28, 28, 20).rasterize(model, out);
+
+        assertEquals(StrokeRasterizer.INK, out[14 * 28 + 14], 0f);
+        assertEquals(0f, out[14 * 28 + 20], 0f);
+    }
+
+    private static float sum(float[] values) {
+        float sum = 0;
+        for (float value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
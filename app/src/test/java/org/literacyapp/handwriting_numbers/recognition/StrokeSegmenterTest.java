@@ -0,0 +1,83 @@
+package org.literacyapp.handwriting_numbers.recognition;
+
+import org.junit.Test;
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+
+import static org.junit.Assert.*;
+
+public class StrokeSegmenterTest {
+
+    private final StrokeSegmenter segmenter = new StrokeSegmenter(20, StrokeSegmenter.DEFAULT_GAP_RATIO);
+
+    @Test
+    public void segment_emptyModel() throws Exception {
+        assertEquals(0, segmenter.segment(new DrawModel(280, 280)));
+    }
+
+    @Test
+    public void segment_ten() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        // 0 first, then the 1 to its left
+        addLine(model, 150, 60, 230, 60, 230, 220, 150, 220, 150, 60);
+        addLine(model, 70, 60, 70, 220);
+
+        assertEquals(2, segmenter.segment(model));
+
+        int[] lines = segmenter.getLines();
+        assertEquals(1, segmenter.getDigitEnd(0) - segmenter.getDigitStart(0));
+        assertEquals(1, lines[segmenter.getDigitStart(0)]);
+        assertEquals(1, segmenter.getDigitEnd(1) - segmenter.getDigitStart(1));
+        assertEquals(0, lines[segmenter.getDigitStart(1)]);
+    }
+
+    @Test
+    public void segment_overlappingStrokesAreOneDigit() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        // A 4 of two strokes, then a 2, then the bar of the 4 is extended
+        addLine(model, 60, 40, 30, 140, 120, 140);
+        addLine(model, 100, 40, 100, 240);
+        addLine(model, 180, 60, 250, 60, 250, 140, 180, 240, 260, 240);
+        addLine(model, 110, 140, 130, 140);
+
+        assertEquals(2, segmenter.segment(model));
+
+        int[] lines = segmenter.getLines();
+        assertEquals(3, segmenter.getDigitEnd(0) - segmenter.getDigitStart(0));
+        assertEquals(2, lines[segmenter.getDigitStart(1)]);
+    }
+
+    @Test
+    public void segment_smallGapIsOneDigit() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        // Two strokes closer than the pen width, e.g. a 1 drawn twice
+        addLine(model, 100, 40, 100, 240);
+        addLine(model, 115, 40, 115, 240);
+
+        assertEquals(1, segmenter.segment(model));
+    }
+
+    @Test
+    public void rasterize_digitMatchesRange() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        addLine(model, 150, 60, 230, 60, 230, 220, 150, 220, 150, 60);
+        addLine(model, 70, 60, 70, 220);
+        segmenter.segment(model);
+        StrokeRasterizer rasterizer = new StrokeRasterizer(28, 28, 20);
+        float[] digit = new float[28 * 28];
+        float[] range = new float[28 * 28];
+
+        int start = segmenter.getDigitStart(1);
+        rasterizer.rasterize(model, segmenter.getLines(), start, segmenter.getDigitEnd(1) - start, digit);
+        rasterizer.rasterize(model, 0, 1, range);
+
+        assertArrayEquals(range, digit, 0f);
+    }
+
+    private static void addLine(DrawModel model, float... points) {
+        model.startLine(points[0], points[1]);
+        for (int i = 2; i < points.length; i += 2) {
+            model.addLineElem(points[i], points[i + 1]);
+        }
+        model.endLine();
+    }
+}
@@ -0,0 +1,221 @@
+package org.literacyapp.handwriting_numbers.recording;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class AttemptLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static DrawModel drawSeven() {
+        DrawModel model = new DrawModel(28, 28);
+        model.startLine(4.25f, 5f);
+        model.addLineElem(20.5f, 5f);
+        model.addLineElem(12f, 24.875f);
+        model.endLine();
+        model.startLine(8f, 14f);
+        model.addLineElem(18f, 14f);
+        model.endLine();
+        return model;
+    }
+
+    private static void writeAttempts(File file, int count) throws IOException {
+        AttemptLogWriter writer = new AttemptLogWriter(file, count, 4, 50);
+        DrawModel model = drawSeven();
+        for (int i = 0; i < count; i++) {
+            AttemptRecord record = writer.obtain();
+            record.numberToWrite = 7;
+            record.recognizedNumber = (i % 2 == 0) ? 7 : -1;
+            record.startTimeMillis = 1500000000000L + i;
+            record.touchUpOffsetMillis = 800;
+            record.decisionOffsetMillis = 812;
+            record.setStrokes(model);
+            float[] outputs = new float[10];
+            outputs[7] = 0.9f;
+            outputs[1] = i;
+            record.setOutputs(outputs, outputs.length);
+            writer.submit(record);
+        }
+        writer.close();
+        assertEquals(count, writer.getWrittenCount());
+        assertEquals(0, writer.getDroppedCount());
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws Exception {
+        File file = folder.newFile();
+        writeAttempts(file, 5);
+
+        AttemptLogReader reader = new AttemptLogReader(file);
+        AttemptRecord record = new AttemptRecord();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(reader.next(record));
+            assertEquals(7, record.numberToWrite);
+            assertEquals((i % 2 == 0) ? 7 : -1, record.recognizedNumber);
+            assertEquals(1500000000000L + i, record.startTimeMillis);
+            assertEquals(812, record.decisionOffsetMillis);
+            assertEquals(28, record.modelWidth);
+            assertEquals(2, record.getLineCount());
+            assertEquals(5, record.getPointCount());
+            assertEquals(3, record.getLineEnd(0));
+            assertEquals(4.25f, record.getX(0), 0);
+            assertEquals(24.875f, record.getY(2), 0);
+            assertEquals(18f, record.getX(4), 0);
+            assertEquals(10, record.getOutputCount());
+            assertEquals(i, record.getOutput(1), 0);
+        }
+        assertFalse(reader.next(record));
+        assertFalse(reader.isTruncated());
+        reader.close();
+    }
+
+    @Test
+    public void getStrokes_rebuildsTheModel() throws Exception {
+        DrawModel model = drawSeven();
+        AttemptRecord record = new AttemptRecord();
+        record.setStrokes(model);
+
+        DrawModel copy = new DrawModel(28, 28);
+        record.getStrokes(copy);
+
+        assertEquals(model.getLineSize(), copy.getLineSize());
+        assertEquals(model.getPointCount(), copy.getPointCount());
+        for (int i = 0; i < model.getPointCount() * 2; i++) {
+            assertEquals(model.getPoints()[i], copy.getPoints()[i], 0.5f / AttemptLogFormat.COORDINATE_SCALE);
+        }
+    }
+
+    @Test
+    public void ignoresIncompleteLastRecord() throws Exception {
+        File file = folder.newFile();
+        writeAttempts(file, 3);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(file.length() - 5);
+        randomAccessFile.close();
+
+        AttemptLogReader reader = new AttemptLogReader(file);
+        AttemptRecord record = new AttemptRecord();
+        assertTrue(reader.next(record));
+        assertTrue(reader.next(record));
+        assertFalse(reader.next(record));
+        assertTrue(reader.isTruncated());
+        reader.close();
+    }
+
+    @Test
+    public void appendsAfterIncompleteLastRecord() throws Exception {
+        File file = folder.newFile();
+        writeAttempts(file, 3);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(file.length() - 5);
+        randomAccessFile.close();
+
+        writeAttempts(file, 2);
+
+        AttemptLogReader reader = new AttemptLogReader(file);
+        AttemptRecord record = new AttemptRecord();
+        int count = 0;
+        while (reader.next(record)) {
+            count++;
+        }
+        assertEquals(4, count);
+        assertFalse(reader.isTruncated());
+        reader.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void detectsCorruptRecord() throws Exception {
+        File file = folder.newFile();
+        writeAttempts(file, 1);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(AttemptLogFormat.FILE_HEADER_SIZE + 6);
+        randomAccessFile.write(0x55);
+        randomAccessFile.close();
+
+        AttemptLogReader reader = new AttemptLogReader(file);
+        try {
+            reader.next(new AttemptRecord());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void rollsOverAtTheMaximumSize() throws Exception {
+        File file = new File(folder.getRoot(), "attempts.hhal");
+        // Every record fills a file on its own
+        AttemptLogWriter writer = new AttemptLogWriter(file, 1, 1, 50, 1, 3);
+        DrawModel model = drawSeven();
+        for (int i = 0; i < 5; i++) {
+            AttemptRecord record;
+            while ((record = writer.obtain()) == null) {
+                Thread.sleep(1);
+            }
+            record.numberToWrite = i;
+            record.setStrokes(model);
+            writer.submit(record);
+        }
+        writer.close();
+        assertEquals(5, writer.getWrittenCount());
+
+        // The two oldest files have been deleted, the current one is empty
+        File[] rolledFiles = writer.getRolledFiles();
+        assertEquals(3, rolledFiles.length);
+        for (int i = 0; i < rolledFiles.length; i++) {
+            assertEquals(String.format("attempts-%06d.hhal", i + 3), rolledFiles[i].getName());
+            AttemptLogReader reader = new AttemptLogReader(rolledFiles[i]);
+            AttemptRecord record = new AttemptRecord();
+            assertTrue(reader.next(record));
+            assertEquals(i + 2, record.numberToWrite);
+            assertFalse(reader.next(record));
+            reader.close();
+        }
+        assertEquals(AttemptLogFormat.FILE_HEADER_SIZE, file.length());
+    }
+
+    @Test
+    public void startsOverAnIncompleteHeader() throws Exception {
+        // The process died while writing the header
+        File file = folder.newFile();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.write(new byte[]{0x48, 0x48, 0x41});
+        randomAccessFile.close();
+
+        writeAttempts(file, 2);
+
+        AttemptLogReader reader = new AttemptLogReader(file);
+        AttemptRecord record = new AttemptRecord();
+        assertTrue(reader.next(record));
+        assertTrue(reader.next(record));
+        assertFalse(reader.next(record));
+        reader.close();
+    }
+
+    @Test
+    public void obtain_returnsNullWhenClosed() throws Exception {
+        AttemptLogWriter writer = new AttemptLogWriter(folder.newFile(), 2, 1, 50);
+        writer.close();
+
+        assertNull(writer.obtain());
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+    @Test
+    public void zigzag_roundTrips() {
+        int[] values = {0, 1, -1, 63, -64, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int value : values) {
+            assertEquals(value, AttemptLogFormat.unzigzag(AttemptLogFormat.zigzag(value)));
+        }
+        assertEquals(1, AttemptLogFormat.zigzag(-1));
+        assertEquals(2, AttemptLogFormat.zigzag(1));
+    }
+}
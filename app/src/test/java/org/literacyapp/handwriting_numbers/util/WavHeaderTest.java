@@ -0,0 +1,39 @@
+package org.literacyapp.handwriting_numbers.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class WavHeaderTest {
+
+    /**
+     * 16-bit mono PCM at 48 kHz with a LIST chunk before the data, like the prompts in res/raw.
+     */
+    private static byte[] wav(int dataSize) {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + 8 + 16 + 8 + 4 + 8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes()).putInt(36 + dataSize).put("WAVE".getBytes());
+        buffer.put("fmt ".getBytes()).putInt(16)
+                .putShort((short) 1).putShort((short) 1).putInt(48000).putInt(96000)
+                .putShort((short) 2).putShort((short) 16);
+        buffer.put("LIST".getBytes()).putInt(4).put("INFO".getBytes());
+        buffer.put("data".getBytes()).putInt(dataSize);
+        return buffer.array();
+    }
+
+    @Test
+    public void readDurationMillis_usesByteRate() throws Exception {
+        long duration = WavHeader.readDurationMillis(new ByteArrayInputStream(wav(96000 * 3 / 2)));
+
+        assertEquals(1500, duration);
+    }
+
+    @Test(expected = IOException.class)
+    public void readDurationMillis_rejectsOtherFiles() throws Exception {
+        WavHeader.readDurationMillis(new ByteArrayInputStream(new byte[64]));
+    }
+}
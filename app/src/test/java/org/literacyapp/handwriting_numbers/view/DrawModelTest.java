@@ -0,0 +1,105 @@
+package org.literacyapp.handwriting_numbers.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DrawModelTest {
+
+    @Test
+    public void addLineElem_appendsToCurrentLine() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        model.startLine(1, 2);
+        model.addLineElem(3, 4);
+        model.endLine();
+        model.startLine(5, 6);
+        model.endLine();
+
+        assertEquals(2, model.getLineSize());
+        assertEquals(3, model.getPointCount());
+        assertEquals(0, model.getLineStart(0));
+        assertEquals(2, model.getLineEnd(0));
+        assertEquals(2, model.getLineStart(1));
+        assertEquals(3, model.getLineEnd(1));
+
+        DrawModel.Line line = model.getLine(0);
+        assertEquals(2, line.getElemSize());
+        assertEquals(3f, line.getElem(1).x, 0f);
+        assertEquals(4f, line.getElem(1).y, 0f);
+    }
+
+    @Test
+    public void addLineElem_isIgnoredOutsideOfLine() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        model.addLineElem(1, 2);
+        model.startLine(1, 2);
+        model.endLine();
+        model.addLineElem(3, 4);
+
+        assertEquals(1, model.getPointCount());
+    }
+
+    @Test
+    public void addLineElem_growsBeyondInitialCapacity() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        model.startLine(0, 0);
+        for (int i = 1; i < 5000; i++) {
+            model.addLineElem(i, -i);
+        }
+        model.endLine();
+
+        assertEquals(5000, model.getPointCount());
+        assertEquals(4999f, model.getPoints()[4999 * 2], 0f);
+        assertEquals(-4999f, model.getPoints()[4999 * 2 + 1], 0f);
+    }
+
+    @Test
+    public void clear_removesAllLines() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        model.startLine(1, 2);
+        model.clear();
+        model.addLineElem(3, 4);
+
+        assertEquals(0, model.getLineSize());
+        assertEquals(0, model.getPointCount());
+    }
+
+    @Test
+    public void getVersion_changesWithPointsAndClear() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        model.startLine(1, 2);
+        long oneLine = model.getVersion();
+        model.addLineElem(3, 4);
+        long twoPoints = model.getVersion();
+        model.endLine();
+
+        assertNotEquals(oneLine, twoPoints);
+        assertEquals(twoPoints, model.getVersion());
+
+        model.clear();
+        model.startLine(5, 6);
+        model.addLineElem(7, 8);
+
+        assertNotEquals(twoPoints, model.getVersion());
+    }
+
+    @Test
+    public void addLineElems_appendsAllPointsBeyondCapacity() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        model.startLine(0, 0);
+        float[] points = new float[3000 * 2];
+        for (int i = 0; i < 3000; i++) {
+            points[i * 2] = i + 1;
+            points[i * 2 + 1] = -(i + 1);
+        }
+        model.addLineElems(points, 3000);
+        model.addLineElems(points, 2);
+        model.endLine();
+        model.addLineElems(points, 3000);
+
+        assertEquals(3003, model.getPointCount());
+        assertEquals(3003, model.getLineEnd(0));
+        assertEquals(3000f, model.getPoints()[3000 * 2], 0f);
+        assertEquals(-2f, model.getPoints()[3002 * 2 + 1], 0f);
+    }
+}
@@ -0,0 +1,77 @@
+package org.literacyapp.handwriting_numbers.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StrokeSimplifierTest {
+
+    @Test
+    public void addPoint_straightLineKeepsOnlyEndPoints() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        StrokeSimplifier simplifier = new StrokeSimplifier(1f);
+
+        simplifier.startLine(model, 10, 10);
+        for (int i = 1; i <= 50; i++) {
+            simplifier.addPoint(model, 10 + i * 3, 10 + i * 0.01f * (i % 2));
+        }
+        simplifier.endLine(model);
+
+        assertEquals(2, model.getPointCount());
+        assertEquals(160f, model.getPoints()[2], 0f);
+        assertEquals(51, simplifier.getInputCount());
+        assertEquals(2, simplifier.getOutputCount());
+        assertEquals(25.5f, simplifier.getReductionRatio(), 0.0001f);
+    }
+
+    @Test
+    public void addPoint_keepsCornersWithinTolerance() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        StrokeSimplifier simplifier = new StrokeSimplifier(1f);
+
+        // An L: right along y = 0, then down along x = 100
+        simplifier.startLine(model, 0, 0);
+        for (int i = 1; i <= 50; i++) {
+            simplifier.addPoint(model, i * 2, 0);
+        }
+        for (int i = 1; i <= 50; i++) {
+            simplifier.addPoint(model, 100, i * 2);
+        }
+        simplifier.endLine(model);
+
+        assertEquals(3, model.getPointCount());
+        float[] points = model.getPoints();
+        assertEquals(100f, points[2], 0f);
+        assertEquals(0f, points[3], 0f);
+        assertEquals(100f, points[4], 0f);
+        assertEquals(100f, points[5], 0f);
+    }
+
+    @Test
+    public void endLine_storesLastSampleWhichWasTooClose() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        StrokeSimplifier simplifier = new StrokeSimplifier(1f);
+
+        simplifier.startLine(model, 0, 0);
+        simplifier.addPoint(model, 10, 0);
+        simplifier.addPoint(model, 10.5f, 0);
+        simplifier.endLine(model);
+
+        assertEquals(2, model.getPointCount());
+        assertEquals(10.5f, model.getPoints()[2], 0f);
+    }
+
+    @Test
+    public void addPoint_movesTailRevision() throws Exception {
+        DrawModel model = new DrawModel(280, 280);
+        StrokeSimplifier simplifier = new StrokeSimplifier(1f);
+
+        simplifier.startLine(model, 0, 0);
+        simplifier.addPoint(model, 10, 0);
+        long version = model.getVersion();
+        simplifier.addPoint(model, 20, 0);
+
+        assertEquals(1, model.getTailRevision());
+        assertNotEquals(version, model.getVersion());
+    }
+}
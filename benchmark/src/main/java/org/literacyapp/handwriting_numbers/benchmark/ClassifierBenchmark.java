@@ -0,0 +1,118 @@
+package org.literacyapp.handwriting_numbers.benchmark;
+
+import org.literacyapp.handwriting_numbers.recognition.CachingDigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.JavaDigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.MnistPreprocessor;
+import org.literacyapp.handwriting_numbers.recognition.StrokeRasterizer;
+import org.literacyapp.handwriting_numbers.recognition.WeightFileWriter;
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * The JVM-runnable classifier backends, on a network with the shape of the expert graph and
+ * random weights. The cost of inference does not depend on the weight values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassifierBenchmark {
+
+    private DigitClassifier javaClassifier;
+    private DigitClassifier quantizedClassifier;
+    private DigitClassifier cachedClassifier;
+    private float[] pixels;
+    private float[] outputs;
+
+    @Setup
+    public void setup() {
+        javaClassifier = new JavaDigitClassifier(ByteBuffer.wrap(expertWeightFile(new Random(1), false)));
+        quantizedClassifier = new JavaDigitClassifier(ByteBuffer.wrap(expertWeightFile(new Random(1), true)));
+
+        DrawModel model = new DrawModel(StrokeWorkload.MODEL_SIZE, StrokeWorkload.MODEL_SIZE);
+        StrokeWorkload.drawDigit(model, 0, 1);
+        float[] raster = new float[112 * 112];
+        new StrokeRasterizer(112, 112, 20).rasterize(model, raster);
+        pixels = new float[DigitClassifier.INPUT_SIZE * DigitClassifier.INPUT_SIZE];
+        new MnistPreprocessor(112, 112).process(raster, pixels);
+        outputs = new float[DigitClassifier.OUTPUT_SIZE];
+
+        cachedClassifier = new CachingDigitClassifier(javaClassifier, 32);
+        cachedClassifier.classify(pixels, outputs);
+    }
+
+    @Benchmark
+    public float[] javaClassifier() {
+        javaClassifier.classify(pixels, outputs);
+        return outputs;
+    }
+
+    @Benchmark
+    public float[] quantizedClassifier() {
+        quantizedClassifier.classify(pixels, outputs);
+        return outputs;
+    }
+
+    /**
+     * A cache hit, the cost of a lookup in front of the backend.
+     */
+    @Benchmark
+    public float[] cachedClassifier() {
+        cachedClassifier.classify(pixels, outputs);
+        return outputs;
+    }
+
+    /**
+     * conv 5x5x32, pool, conv 5x5x64, pool, dense 1024, dense 10, softmax
+     *
+     * @param quantized  whether the conv and dense layers are stored as int8
+     */
+    static byte[] expertWeightFile(Random random, boolean quantized) {
+        WeightFileWriter writer = new WeightFileWriter(28, 28, 1);
+        conv(writer, quantized, 32, 5, randomValues(random, 32 * 5 * 5), randomValues(random, 32));
+        writer.relu().maxPool(2);
+        conv(writer, quantized, 64, 5, randomValues(random, 64 * 5 * 5 * 32), randomValues(random, 64));
+        writer.relu().maxPool(2);
+        dense(writer, quantized, 1024, randomValues(random, 1024 * 7 * 7 * 64), randomValues(random, 1024));
+        writer.relu();
+        dense(writer, quantized, 10, randomValues(random, 10 * 1024), randomValues(random, 10));
+        return writer.softmax().toByteArray();
+    }
+
+    private static void conv(WeightFileWriter writer, boolean quantized, int outChannels, int kernelSize, float[] weights, float[] bias) {
+        if (quantized) {
+            writer.quantizedConv(outChannels, kernelSize, weights, bias);
+        } else {
+            writer.conv(outChannels, kernelSize, weights, bias);
+        }
+    }
+
+    private static void dense(WeightFileWriter writer, boolean quantized, int outSize, float[] weights, float[] bias) {
+        if (quantized) {
+            writer.quantizedDense(outSize, weights, bias);
+        } else {
+            writer.dense(outSize, weights, bias);
+        }
+    }
+
+    private static float[] randomValues(Random random, int count) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (float) (random.nextGaussian() * 0.05);
+        }
+        return values;
+    }
+}
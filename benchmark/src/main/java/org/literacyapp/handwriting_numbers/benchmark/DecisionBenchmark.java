@@ -0,0 +1,48 @@
+package org.literacyapp.handwriting_numbers.benchmark;
+
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.DigitDecision;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * The output vector decision loop of {@code DrawViewOnTouchListener}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecisionBenchmark {
+
+    private static final int VECTORS = 64;
+
+    private float[][] outputs;
+    private int index;
+
+    @Setup
+    public void setup() {
+        // Softmax-like outputs, most of them confident
+        Random random = new Random(1);
+        outputs = new float[VECTORS][DigitClassifier.OUTPUT_SIZE];
+        for (float[] output : outputs) {
+            int digit = random.nextInt(DigitClassifier.OUTPUT_SIZE);
+            output[digit] = random.nextInt(4) == 0 ? 0.9f : 1.0f;
+        }
+    }
+
+    @Benchmark
+    public int recognize() {
+        index = (index + 1) % VECTORS;
+        return DigitDecision.recognize(outputs[index], DigitDecision.THRESHOLD);
+    }
+}
@@ -0,0 +1,72 @@
+package org.literacyapp.handwriting_numbers.benchmark;
+
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Appending touch samples to the {@link DrawModel}, one operation is one point.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawModelBenchmark {
+
+    private static final int POINTS = 600;
+    private static final int HISTORY_SIZE = 8;
+
+    private DrawModel model;
+    private float[] samples;
+    private float[] batch = new float[HISTORY_SIZE * 2];
+
+    @Setup
+    public void setup() {
+        model = new DrawModel(StrokeWorkload.MODEL_SIZE, StrokeWorkload.MODEL_SIZE);
+        // Record the samples of a real drawing, so that the appends see realistic coordinates
+        StrokeWorkload.drawDigit(model, 0, 1);
+        samples = new float[POINTS * 2];
+        int count = model.getPointCount();
+        for (int i = 0; i < POINTS; i++) {
+            samples[i * 2] = model.getPoints()[(i % count) * 2];
+            samples[i * 2 + 1] = model.getPoints()[(i % count) * 2 + 1];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public DrawModel appendPoints() {
+        model.clear();
+        model.startLine(samples[0], samples[1]);
+        for (int i = 1; i < POINTS; i++) {
+            model.addLineElem(samples[i * 2], samples[i * 2 + 1]);
+        }
+        model.endLine();
+        return model;
+    }
+
+    /**
+     * The same points, appended in batches of 8 like the historical samples of a MotionEvent.
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public DrawModel appendHistoricalBatches() {
+        model.clear();
+        model.startLine(samples[0], samples[1]);
+        for (int i = 1; i < POINTS; i += HISTORY_SIZE) {
+            System.arraycopy(samples, i * 2, batch, 0, Math.min(HISTORY_SIZE, POINTS - i) * 2);
+            model.addLineElems(batch, Math.min(HISTORY_SIZE, POINTS - i));
+        }
+        model.endLine();
+        return model;
+    }
+}
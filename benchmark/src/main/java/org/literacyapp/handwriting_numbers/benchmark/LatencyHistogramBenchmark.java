@@ -0,0 +1,57 @@
+package org.literacyapp.handwriting_numbers.benchmark;
+
+import org.literacyapp.handwriting_numbers.metrics.LatencyHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a latency, from one thread and from threads which share the histogram
+ * like the UI and inference threads do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyHistogramBenchmark {
+
+    private final LatencyHistogram histogram = new LatencyHistogram("benchmark");
+
+    @State(Scope.Thread)
+    public static class Latency {
+        long nanos = 1000;
+
+        long next() {
+            // Spread over the buckets of 1 us to 1 ms
+            nanos = (nanos < 1000000) ? nanos * 3 / 2 : 1000;
+            return nanos;
+        }
+    }
+
+    @Benchmark
+    public void record(Latency latency) {
+        histogram.record(latency.next());
+    }
+
+    @Benchmark
+    public void recordSince(Latency latency) {
+        histogram.recordSince(System.nanoTime() - latency.next());
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void recordShared(Latency latency) {
+        histogram.record(latency.next());
+    }
+}
@@ -0,0 +1,69 @@
+package org.literacyapp.handwriting_numbers.benchmark;
+
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.PixelConversion;
+import org.literacyapp.handwriting_numbers.recognition.StrokeRasterizer;
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The pixel conversion loop of {@code DrawView.getPixelData}, with and without allocating the
+ * output like getPixelData did, and reading the coverage of an ALPHA_8 bitmap directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PixelConversionBenchmark {
+
+    private int[] argbPixels;
+    private byte[] alphaPixels;
+    private float[] pixels;
+
+    @Setup
+    public void setup() {
+        // The ARGB pixels of a real drawing, black ink on white
+        DrawModel model = new DrawModel(StrokeWorkload.MODEL_SIZE, StrokeWorkload.MODEL_SIZE);
+        StrokeWorkload.drawDigit(model, 2, 1);
+        float[] coverage = new float[DigitClassifier.INPUT_SIZE * DigitClassifier.INPUT_SIZE];
+        new StrokeRasterizer(DigitClassifier.INPUT_SIZE, DigitClassifier.INPUT_SIZE, 20).rasterize(model, coverage);
+        argbPixels = new int[coverage.length];
+        for (int i = 0; i < coverage.length; i++) {
+            int gray = 0xff - (int) coverage[i];
+            argbPixels[i] = 0xff000000 | (gray << 16) | (gray << 8) | gray;
+        }
+        alphaPixels = new byte[coverage.length];
+        for (int i = 0; i < coverage.length; i++) {
+            alphaPixels[i] = (byte) (int) coverage[i];
+        }
+        pixels = new float[argbPixels.length];
+    }
+
+    @Benchmark
+    public float[] convertReused() {
+        PixelConversion.argbToInput(argbPixels, pixels);
+        return pixels;
+    }
+
+    @Benchmark
+    public float[] convertAllocating() {
+        float[] retPixels = new float[argbPixels.length];
+        PixelConversion.argbToInput(argbPixels, retPixels);
+        return retPixels;
+    }
+
+    @Benchmark
+    public float[] convertAlpha() {
+        PixelConversion.alphaToInput(alphaPixels, DigitClassifier.INPUT_SIZE, DigitClassifier.INPUT_SIZE, DigitClassifier.INPUT_SIZE, pixels);
+        return pixels;
+    }
+}
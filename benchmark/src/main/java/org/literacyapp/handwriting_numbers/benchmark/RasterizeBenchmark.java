@@ -0,0 +1,118 @@
+package org.literacyapp.handwriting_numbers.benchmark;
+
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.MnistPreprocessor;
+import org.literacyapp.handwriting_numbers.recognition.RecognitionPipeline;
+import org.literacyapp.handwriting_numbers.recognition.StrokeRasterizer;
+import org.literacyapp.handwriting_numbers.recognition.StrokeSegmenter;
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Preparing the model input from the strokes of a drawing, and of a two-digit number made of two
+ * narrower copies of the drawing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RasterizeBenchmark {
+
+    // 0: ellipse, 1: three lines, 2: two loops, 3: two long lines
+    @Param({"0", "1", "2", "3"})
+    public int workload;
+
+    private static final float STROKE_WIDTH = RecognitionPipeline.STROKE_WIDTH;
+    private static final int RASTER_SIZE = RecognitionPipeline.RASTER_SIZE;
+
+    private DrawModel model;
+    private StrokeRasterizer inputRasterizer;
+    private StrokeRasterizer rasterizer;
+    private MnistPreprocessor preprocessor;
+    private float[] raster;
+    private float[] pixels;
+
+    private DrawModel numberModel;
+    private StrokeSegmenter segmenter;
+    private float[] numberPixels;
+
+    @Setup
+    public void setup() {
+        model = new DrawModel(StrokeWorkload.MODEL_SIZE, StrokeWorkload.MODEL_SIZE);
+        StrokeWorkload.drawDigit(model, workload, 1);
+        inputRasterizer = new StrokeRasterizer(DigitClassifier.INPUT_SIZE, DigitClassifier.INPUT_SIZE, STROKE_WIDTH);
+        rasterizer = new StrokeRasterizer(RASTER_SIZE, RASTER_SIZE, STROKE_WIDTH);
+        preprocessor = new MnistPreprocessor(RASTER_SIZE, RASTER_SIZE);
+        raster = new float[RASTER_SIZE * RASTER_SIZE];
+        pixels = new float[DigitClassifier.INPUT_SIZE * DigitClassifier.INPUT_SIZE];
+
+        numberModel = new DrawModel(StrokeWorkload.MODEL_SIZE, StrokeWorkload.MODEL_SIZE);
+        addScaled(model, 0, numberModel);
+        addScaled(model, StrokeWorkload.MODEL_SIZE / 2, numberModel);
+        segmenter = new StrokeSegmenter(STROKE_WIDTH, StrokeSegmenter.DEFAULT_GAP_RATIO);
+        numberPixels = new float[2 * pixels.length];
+    }
+
+    /**
+     * Adds the lines of {@code source} at 40% of the width, starting at {@code offsetX}.
+     */
+    private static void addScaled(DrawModel source, float offsetX, DrawModel target) {
+        float[] points = source.getPoints();
+        for (int i = 0; i < source.getLineSize(); i++) {
+            int start = source.getLineStart(i);
+            target.startLine(offsetX + points[start * 2] * 0.4f, points[start * 2 + 1]);
+            for (int j = start + 1; j < source.getLineEnd(i); j++) {
+                target.addLineElem(offsetX + points[j * 2] * 0.4f, points[j * 2 + 1]);
+            }
+            target.endLine();
+        }
+    }
+
+    @Benchmark
+    public float[] rasterizeInput() {
+        inputRasterizer.rasterize(model, pixels);
+        return pixels;
+    }
+
+    @Benchmark
+    public float[] rasterize112() {
+        rasterizer.rasterize(model, raster);
+        return raster;
+    }
+
+    @Benchmark
+    public float[] preprocess() {
+        preprocessor.process(raster, pixels);
+        return pixels;
+    }
+
+    @Benchmark
+    public float[] rasterizeAndPreprocess() {
+        rasterizer.rasterize(model, raster);
+        preprocessor.process(raster, pixels);
+        return pixels;
+    }
+
+    @Benchmark
+    public float[] segmentAndPreprocessTwoDigits() {
+        int digitCount = segmenter.segment(numberModel);
+        int[] lines = segmenter.getLines();
+        for (int digit = 0; digit < digitCount; digit++) {
+            int start = segmenter.getDigitStart(digit);
+            rasterizer.rasterize(numberModel, lines, start, segmenter.getDigitEnd(digit) - start, raster);
+            preprocessor.process(raster, pixels);
+            System.arraycopy(pixels, 0, numberPixels, digit * pixels.length, pixels.length);
+        }
+        return numberPixels;
+    }
+}
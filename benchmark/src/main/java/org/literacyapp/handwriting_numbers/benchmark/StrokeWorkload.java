@@ -0,0 +1,77 @@
+package org.literacyapp.handwriting_numbers.benchmark;
+
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+
+import java.util.Random;
+
+/**
+ * Synthetic drawings which look like the touch input of a child drawing digits on the 280x280
+ * model: strokes sampled every few model pixels with a little jitter.
+ */
+public final class StrokeWorkload {
+
+    public static final int MODEL_SIZE = 280;
+
+    // Distance between touch samples in model pixels, about 120 Hz at a moderate finger speed
+    private static final float SAMPLE_DISTANCE = 3f;
+    private static final float JITTER = 0.8f;
+
+    private StrokeWorkload() {
+    }
+
+    /**
+     * Draws the given digit into the model, which is cleared first.
+     */
+    public static void drawDigit(DrawModel model, int digit, long seed) {
+        Random random = new Random(seed);
+        model.clear();
+        switch (digit % 4) {
+            case 0:
+                // 0: a single ellipse
+                ellipse(model, random, 140, 140, 70, 110, 0, 2 * Math.PI);
+                break;
+            case 1:
+                // 4: three straight strokes
+                line(model, random, 170, 30, 60, 180);
+                line(model, random, 60, 180, 220, 180);
+                line(model, random, 170, 60, 170, 260);
+                break;
+            case 2:
+                // 8: two loops
+                ellipse(model, random, 140, 85, 55, 55, 0, 2 * Math.PI);
+                ellipse(model, random, 140, 195, 65, 65, 0, 2 * Math.PI);
+                break;
+            default:
+                // 7: horizontal bar and a long diagonal
+                line(model, random, 50, 40, 230, 40);
+                line(model, random, 230, 40, 110, 260);
+                break;
+        }
+    }
+
+    private static void line(DrawModel model, Random random, float x0, float y0, float x1, float y1) {
+        float length = (float) Math.hypot(x1 - x0, y1 - y0);
+        int steps = Math.max(1, (int) (length / SAMPLE_DISTANCE));
+        model.startLine(x0, y0);
+        for (int i = 1; i <= steps; i++) {
+            float t = i / (float) steps;
+            model.addLineElem(jitter(random, x0 + t * (x1 - x0)), jitter(random, y0 + t * (y1 - y0)));
+        }
+        model.endLine();
+    }
+
+    private static void ellipse(DrawModel model, Random random, float cx, float cy, float rx, float ry, double from, double to) {
+        double circumference = Math.PI * (3 * (rx + ry) - Math.sqrt((3 * rx + ry) * (rx + 3 * ry)));
+        int steps = Math.max(1, (int) (circumference * (to - from) / (2 * Math.PI) / SAMPLE_DISTANCE));
+        model.startLine((float) (cx + rx * Math.cos(from)), (float) (cy + ry * Math.sin(from)));
+        for (int i = 1; i <= steps; i++) {
+            double angle = from + (to - from) * i / steps;
+            model.addLineElem(jitter(random, (float) (cx + rx * Math.cos(angle))), jitter(random, (float) (cy + ry * Math.sin(angle))));
+        }
+        model.endLine();
+    }
+
+    private static float jitter(Random random, float value) {
+        return value + (random.nextFloat() * 2 - 1) * JITTER;
+    }
+}
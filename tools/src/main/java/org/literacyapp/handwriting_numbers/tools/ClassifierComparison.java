@@ -0,0 +1,176 @@
+package org.literacyapp.handwriting_numbers.tools;
+
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.JavaDigitClassifier;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Runs the float and the int8 weight files over the MNIST test set and reports accuracy,
+ * latency and how often the two backends agree.
+ * <p />
+ *
+ * The MNIST pixels use the same range as the app input, 0 for white and 255 for ink.
+ * <p />
+ *
+ * Usage: ClassifierComparison &lt;MNIST directory&gt; &lt;weight file directory&gt; [image count]
+ */
+public class ClassifierComparison {
+
+    private static final String IMAGES_FILE = "t10k-images-idx3-ubyte";
+    private static final String LABELS_FILE = "t10k-labels-idx1-ubyte";
+
+    private static final int WARM_UP_IMAGES = 200;
+
+    public static void main(String[] args) throws IOException {
+        if ((args.length < 2) || (args.length > 3)) {
+            System.err.println("Usage: ClassifierComparison <MNIST directory> <weight file directory> [image count]");
+            System.exit(1);
+        }
+        File mnistDir = new File(args[0]);
+        File weightDir = new File(args[1]);
+
+        float[][] images = readImages(new File(mnistDir, IMAGES_FILE));
+        int[] labels = readLabels(new File(mnistDir, LABELS_FILE));
+        int count = images.length;
+        if (args.length > 2) {
+            count = Math.min(count, Integer.parseInt(args[2]));
+        }
+
+        File floatFile = new File(weightDir, GraphConverter.FLOAT_WEIGHT_FILE);
+        File quantizedFile = new File(weightDir, GraphConverter.QUANTIZED_WEIGHT_FILE);
+        Result floatResult = run(new JavaDigitClassifier(map(floatFile)), images, labels, count);
+        Result quantizedResult = run(new JavaDigitClassifier(map(quantizedFile)), images, labels, count);
+
+        int agreements = 0;
+        float maxDifference = 0;
+        for (int i = 0; i < count; i++) {
+            if (floatResult.predictions[i] == quantizedResult.predictions[i]) {
+                agreements++;
+            }
+            for (int o = 0; o < DigitClassifier.OUTPUT_SIZE; o++) {
+                float difference = Math.abs(floatResult.outputs[i][o] - quantizedResult.outputs[i][o]);
+                maxDifference = Math.max(maxDifference, difference);
+            }
+        }
+
+        System.out.println("images: " + count);
+        print("float", floatFile, floatResult, count);
+        print("int8", quantizedFile, quantizedResult, count);
+        System.out.println(String.format("int8 mean latency: %.2fx of float",
+                (double) sum(quantizedResult.nanos) / sum(floatResult.nanos)));
+        System.out.println(String.format("agreement: %.2f%%, max output difference: %.4f",
+                100.0 * agreements / count, maxDifference));
+    }
+
+    private static class Result {
+        int[] predictions;
+        float[][] outputs;
+        long[] nanos;
+        int correct;
+    }
+
+    private static Result run(DigitClassifier classifier, float[][] images, int[] labels, int count) {
+        float[] outputs = new float[DigitClassifier.OUTPUT_SIZE];
+        for (int i = 0; i < Math.min(WARM_UP_IMAGES, count); i++) {
+            classifier.classify(images[i], outputs);
+        }
+
+        Result result = new Result();
+        result.predictions = new int[count];
+        result.outputs = new float[count][DigitClassifier.OUTPUT_SIZE];
+        result.nanos = new long[count];
+        for (int i = 0; i < count; i++) {
+            long startTime = System.nanoTime();
+            classifier.classify(images[i], result.outputs[i]);
+            result.nanos[i] = System.nanoTime() - startTime;
+
+            int prediction = 0;
+            for (int o = 1; o < DigitClassifier.OUTPUT_SIZE; o++) {
+                if (result.outputs[i][o] > result.outputs[i][prediction]) {
+                    prediction = o;
+                }
+            }
+            result.predictions[i] = prediction;
+            if (prediction == labels[i]) {
+                result.correct++;
+            }
+        }
+        classifier.close();
+        return result;
+    }
+
+    private static void print(String name, File weightFile, Result result, int count) {
+        long[] nanos = result.nanos.clone();
+        Arrays.sort(nanos);
+        long total = sum(nanos);
+        System.out.println(String.format("%s: accuracy %.2f%%, latency mean %d us, p50 %d us, p99 %d us, weights %d KB",
+                name,
+                100.0 * result.correct / count,
+                total / count / 1000,
+                nanos[count / 2] / 1000,
+                nanos[Math.min(count - 1, count * 99 / 100)] / 1000,
+                weightFile.length() / 1024));
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+    }
+
+    /**
+     * Reads an idx3 image file into one 28x28 float array per image.
+     */
+    private static float[][] readImages(File file) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (inputStream.readInt() != 0x00000803) {
+                throw new IOException("Not an idx3 image file: " + file);
+            }
+            int count = inputStream.readInt();
+            int rows = inputStream.readInt();
+            int columns = inputStream.readInt();
+            if ((rows != DigitClassifier.INPUT_SIZE) || (columns != DigitClassifier.INPUT_SIZE)) {
+                throw new IOException("Unexpected image size: " + rows + "x" + columns);
+            }
+            byte[] bytes = new byte[rows * columns];
+            float[][] images = new float[count][rows * columns];
+            for (int i = 0; i < count; i++) {
+                inputStream.readFully(bytes);
+                for (int p = 0; p < bytes.length; p++) {
+                    images[i][p] = bytes[p] & 0xff;
+                }
+            }
+            return images;
+        }
+    }
+
+    private static int[] readLabels(File file) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (inputStream.readInt() != 0x00000801) {
+                throw new IOException("Not an idx1 label file: " + file);
+            }
+            int[] labels = new int[inputStream.readInt()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = inputStream.readUnsignedByte();
+            }
+            return labels;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.literacyapp.handwriting_numbers.tools;
+
+import org.literacyapp.handwriting_numbers.recognition.WeightFileWriter;
+import org.tensorflow.Graph;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Converts the weights of the expert graph (conv 5x5x32, pool, conv 5x5x64, pool, dense 1024,
+ * dense 10) into the weight files which are read by JavaDigitClassifier: expert-graph.hwnw with
+ * float weights and expert-graph-q8.hwnw with int8 weights.
+ * <p />
+ *
+ * The TensorFlow 1.2 Java API cannot list the operations of a graph, so the weight and bias
+ * nodes are looked up by name. The defaults are the names of the MNIST expert tutorial, other
+ * names can be passed after the output directory.
+ * <p />
+ *
+ * Usage: GraphConverter &lt;graph.pb&gt; &lt;output directory&gt; [W_conv1 b_conv1 W_conv2 b_conv2 W_fc1 b_fc1 W_fc2 b_fc2]
+ */
+public class GraphConverter {
+
+    public static final String FLOAT_WEIGHT_FILE = "expert-graph.hwnw";
+    public static final String QUANTIZED_WEIGHT_FILE = "expert-graph-q8.hwnw";
+
+    private static final String[] DEFAULT_NODE_NAMES = {
+            "W_conv1", "b_conv1", "W_conv2", "b_conv2", "W_fc1", "b_fc1", "W_fc2", "b_fc2"
+    };
+
+    public static void main(String[] args) throws IOException {
+        if ((args.length != 2) && (args.length != 2 + DEFAULT_NODE_NAMES.length)) {
+            System.err.println("Usage: GraphConverter <graph.pb> <output directory> [" + join(DEFAULT_NODE_NAMES) + "]");
+            System.exit(1);
+        }
+        File graphFile = new File(args[0]);
+        File outDir = new File(args[1]);
+        String[] nodeNames = DEFAULT_NODE_NAMES;
+        if (args.length > 2) {
+            nodeNames = new String[DEFAULT_NODE_NAMES.length];
+            System.arraycopy(args, 2, nodeNames, 0, nodeNames.length);
+        }
+
+        float[][] values = new float[nodeNames.length][];
+        long[][] shapes = new long[nodeNames.length][];
+        try (Graph graph = new Graph()) {
+            graph.importGraphDef(Files.readAllBytes(graphFile.toPath()));
+            try (Session session = new Session(graph)) {
+                for (int i = 0; i < nodeNames.length; i++) {
+                    List<Tensor> tensors = session.runner().fetch(nodeNames[i]).run();
+                    try (Tensor tensor = tensors.get(0)) {
+                        shapes[i] = tensor.shape();
+                        FloatBuffer buffer = FloatBuffer.allocate(tensor.numElements());
+                        tensor.writeTo(buffer);
+                        values[i] = buffer.array();
+                    }
+                    System.out.println(nodeNames[i] + ": " + shapeToString(shapes[i]));
+                }
+            }
+        }
+
+        // TensorFlow stores conv kernels as [ky][kx][in][out] and dense weights as [in][out]
+        float[] conv1 = convWeights(values[0], shapes[0]);
+        float[] conv2 = convWeights(values[2], shapes[2]);
+        float[] fc1 = denseWeights(values[4], shapes[4]);
+        float[] fc2 = denseWeights(values[6], shapes[6]);
+        int conv1Size = (int) shapes[0][0];
+        int conv1Out = (int) shapes[0][3];
+        int conv2Size = (int) shapes[2][0];
+        int conv2Out = (int) shapes[2][3];
+        int fc1Out = (int) shapes[4][1];
+        int fc2Out = (int) shapes[6][1];
+
+        WeightFileWriter floatWriter = new WeightFileWriter(28, 28, 1)
+                .conv(conv1Out, conv1Size, conv1, values[1])
+                .relu()
+                .maxPool(2)
+                .conv(conv2Out, conv2Size, conv2, values[3])
+                .relu()
+                .maxPool(2)
+                .dense(fc1Out, fc1, values[5])
+                .relu()
+                .dense(fc2Out, fc2, values[7])
+                .softmax();
+        WeightFileWriter quantizedWriter = new WeightFileWriter(28, 28, 1)
+                .quantizedConv(conv1Out, conv1Size, conv1, values[1])
+                .relu()
+                .maxPool(2)
+                .quantizedConv(conv2Out, conv2Size, conv2, values[3])
+                .relu()
+                .maxPool(2)
+                .quantizedDense(fc1Out, fc1, values[5])
+                .relu()
+                .quantizedDense(fc2Out, fc2, values[7])
+                .softmax();
+
+        write(floatWriter, new File(outDir, FLOAT_WEIGHT_FILE));
+        write(quantizedWriter, new File(outDir, QUANTIZED_WEIGHT_FILE));
+    }
+
+    /**
+     * Reorders a [ky][kx][in][out] kernel to [out][ky][kx][in].
+     */
+    static float[] convWeights(float[] values, long[] shape) {
+        int kernelHeight = (int) shape[0];
+        int kernelWidth = (int) shape[1];
+        int inChannels = (int) shape[2];
+        int outChannels = (int) shape[3];
+        float[] weights = new float[values.length];
+        for (int ky = 0; ky < kernelHeight; ky++) {
+            for (int kx = 0; kx < kernelWidth; kx++) {
+                for (int ic = 0; ic < inChannels; ic++) {
+                    for (int oc = 0; oc < outChannels; oc++) {
+                        int source = ((ky * kernelWidth + kx) * inChannels + ic) * outChannels + oc;
+                        int target = ((oc * kernelHeight + ky) * kernelWidth + kx) * inChannels + ic;
+                        weights[target] = values[source];
+                    }
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Transposes [in][out] weights to [out][in].
+     */
+    static float[] denseWeights(float[] values, long[] shape) {
+        int inSize = (int) shape[0];
+        int outSize = (int) shape[1];
+        float[] weights = new float[values.length];
+        for (int i = 0; i < inSize; i++) {
+            for (int o = 0; o < outSize; o++) {
+                weights[o * inSize + i] = values[i * outSize + o];
+            }
+        }
+        return weights;
+    }
+
+    private static void write(WeightFileWriter writer, File file) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            writer.writeTo(outputStream);
+        }
+        System.out.println("Wrote " + file + " (" + file.length() / 1024 + " KB)");
+    }
+
+    private static String shapeToString(long[] shape) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < shape.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(shape[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    private static String join(String[] values) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(values[i]);
+        }
+        return builder.toString();
+    }
+}
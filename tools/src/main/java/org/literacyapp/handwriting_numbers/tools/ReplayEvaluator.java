@@ -0,0 +1,333 @@
+package org.literacyapp.handwriting_numbers.tools;
+
+import org.literacyapp.handwriting_numbers.recognition.DigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.DigitDecision;
+import org.literacyapp.handwriting_numbers.recognition.JavaDigitClassifier;
+import org.literacyapp.handwriting_numbers.recognition.RecognitionPipeline;
+import org.literacyapp.handwriting_numbers.recording.AttemptLogReader;
+import org.literacyapp.handwriting_numbers.recording.AttemptRecord;
+import org.literacyapp.handwriting_numbers.view.DrawModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Replays recorded attempts through the {@link RecognitionPipeline} of
+ * {@link org.literacyapp.handwriting_numbers.view.DrawViewOnTouchListener}: rasterize,
+ * preprocess, classify and decide. Numbers with more than one digit are segmented and their
+ * digits classified in one batch, like the listener does. Reports throughput, accuracy per digit
+ * and for multi-digit numbers, and the confusion matrix of the digits, so that a weight file or
+ * preprocessing change can be evaluated on real drawings.
+ * <p />
+ *
+ * The logs are streamed in chunks. While the records of one chunk are replayed in parallel by
+ * a fork/join pool, the next chunk is read. Every worker thread has its own classifier, all
+ * of them share the memory-mapped weights.
+ * <p />
+ *
+ * Only {@link JavaDigitClassifier} is replayed, i.e. the "java" and "quantized" backends of the
+ * ModelRegistry, depending on the weight file. The results say nothing about the TensorFlow
+ * graph, the first line of the output says so.
+ * <p />
+ *
+ * Usage: ReplayEvaluator &lt;weight file&gt; &lt;attempt log or directory&gt;...
+ */
+public class ReplayEvaluator {
+
+    private static final String LOG_SUFFIX = ".hhal";
+
+    private static final int CHUNK_SIZE = 4096;
+    // Records replayed by one task without splitting further
+    private static final int LEAF_SIZE = 64;
+
+    // Column of the confusion matrix for "nothing recognized"
+    private static final int NONE_COLUMN = DigitClassifier.OUTPUT_SIZE;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ReplayEvaluator <weight file> <attempt log or directory>...");
+            System.exit(1);
+        }
+        File weightFile = new File(args[0]);
+        List<File> logFiles = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            addLogFiles(new File(args[i]), logFiles);
+        }
+        if (logFiles.isEmpty()) {
+            System.err.println("No attempt logs found");
+            System.exit(1);
+        }
+
+        ByteBuffer weights = map(weightFile);
+        ForkJoinPool pool = new ForkJoinPool();
+        Pipelines pipelines = new Pipelines(weights);
+
+        AttemptRecord[] reading = newRecords();
+        AttemptRecord[] replaying = newRecords();
+        Tally total = new Tally();
+        long startTime = System.nanoTime();
+        for (File logFile : logFiles) {
+            try (AttemptLogReader reader = new AttemptLogReader(logFile)) {
+                int count = fill(reader, reading);
+                while (count > 0) {
+                    AttemptRecord[] swap = replaying;
+                    replaying = reading;
+                    reading = swap;
+                    ForkJoinTask<Tally> task = pool.submit(new ReplayTask(pipelines, replaying, 0, count));
+                    count = fill(reader, reading);
+                    total.add(task.join());
+                }
+                if (reader.isTruncated()) {
+                    System.out.println(logFile + ": incomplete last record ignored");
+                }
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        pool.shutdown();
+
+        print(weightFile, total, logFiles.size(), elapsedNanos, pool.getParallelism());
+    }
+
+    /**
+     * Sums of a part of the attempts, merged up the fork/join tree.
+     */
+    private static class Tally {
+        // [number to write][recognized number, or NONE_COLUMN]
+        final long[][] confusion = new long[DigitClassifier.OUTPUT_SIZE][DigitClassifier.OUTPUT_SIZE + 1];
+        long attempts;
+        // Number to write is negative
+        long skipped;
+        // Numbers to write with more than one digit
+        long multiDigitAttempts;
+        long multiDigitCorrect;
+        long recordedCorrect;
+        long changedDecisions;
+        long pipelineNanos;
+
+        void add(Tally other) {
+            for (int row = 0; row < confusion.length; row++) {
+                for (int column = 0; column < confusion[row].length; column++) {
+                    confusion[row][column] += other.confusion[row][column];
+                }
+            }
+            attempts += other.attempts;
+            skipped += other.skipped;
+            multiDigitAttempts += other.multiDigitAttempts;
+            multiDigitCorrect += other.multiDigitCorrect;
+            recordedCorrect += other.recordedCorrect;
+            changedDecisions += other.changedDecisions;
+            pipelineNanos += other.pipelineNanos;
+        }
+
+        long correct() {
+            long correct = multiDigitCorrect;
+            for (int digit = 0; digit < confusion.length; digit++) {
+                correct += confusion[digit][digit];
+            }
+            return correct;
+        }
+    }
+
+    /**
+     * The state of the pipeline, one per worker thread.
+     */
+    private static class Pipeline {
+        final RecognitionPipeline pipeline = new RecognitionPipeline(DigitDecision.THRESHOLD);
+        final float[] outputs = new float[RecognitionPipeline.MAX_DIGITS * DigitClassifier.OUTPUT_SIZE];
+        final DigitClassifier classifier;
+        DrawModel model;
+
+        Pipeline(ByteBuffer weights) {
+            classifier = new JavaDigitClassifier(weights);
+        }
+
+        void replay(AttemptRecord record, Tally tally) {
+            int target = record.numberToWrite;
+            if (target < 0) {
+                tally.skipped++;
+                return;
+            }
+            if ((model == null) || (model.getWidth() != record.modelWidth) || (model.getHeight() != record.modelHeight)) {
+                model = new DrawModel(record.modelWidth, record.modelHeight);
+            }
+
+            long startTime = System.nanoTime();
+            record.getStrokes(model);
+            int recognizedNumber = recognize(target);
+            tally.pipelineNanos += System.nanoTime() - startTime;
+
+            tally.attempts++;
+            if (target < DigitClassifier.OUTPUT_SIZE) {
+                tally.confusion[target][(recognizedNumber == DigitDecision.NONE) ? NONE_COLUMN : recognizedNumber]++;
+            } else {
+                tally.multiDigitAttempts++;
+                if (recognizedNumber == target) {
+                    tally.multiDigitCorrect++;
+                }
+            }
+            if (record.recognizedNumber == target) {
+                tally.recordedCorrect++;
+            }
+            if (record.recognizedNumber != recognizedNumber) {
+                tally.changedDecisions++;
+            }
+        }
+
+        private int recognize(int target) {
+            int digitCount = pipeline.prepare(model, target);
+            classifier.classify(pipeline.getPixels(), digitCount, outputs);
+            return pipeline.decide(outputs, digitCount);
+        }
+    }
+
+    private static class Pipelines extends ThreadLocal<Pipeline> {
+        private final ByteBuffer weights;
+
+        Pipelines(ByteBuffer weights) {
+            this.weights = weights;
+        }
+
+        @Override
+        protected Pipeline initialValue() {
+            return new Pipeline(weights);
+        }
+    }
+
+    private static class ReplayTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final Pipelines pipelines;
+        private final AttemptRecord[] records;
+        private final int start;
+        private final int end;
+
+        ReplayTask(Pipelines pipelines, AttemptRecord[] records, int start, int end) {
+            this.pipelines = pipelines;
+            this.records = records;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (end - start <= LEAF_SIZE) {
+                Pipeline pipeline = pipelines.get();
+                Tally tally = new Tally();
+                for (int i = start; i < end; i++) {
+                    pipeline.replay(records[i], tally);
+                }
+                return tally;
+            }
+
+            int middle = (start + end) >>> 1;
+            ReplayTask left = new ReplayTask(pipelines, records, start, middle);
+            left.fork();
+            Tally right = new ReplayTask(pipelines, records, middle, end).compute();
+            Tally tally = left.join();
+            tally.add(right);
+            return tally;
+        }
+    }
+
+    private static AttemptRecord[] newRecords() {
+        AttemptRecord[] records = new AttemptRecord[CHUNK_SIZE];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new AttemptRecord();
+        }
+        return records;
+    }
+
+    /**
+     * @return the number of records read, 0 at the end of the log
+     */
+    private static int fill(AttemptLogReader reader, AttemptRecord[] records) throws IOException {
+        int count = 0;
+        while ((count < records.length) && reader.next(records[count])) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void addLogFiles(File file, List<File> logFiles) {
+        if (!file.isDirectory()) {
+            logFiles.add(file);
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory() || child.getName().endsWith(LOG_SUFFIX)) {
+                addLogFiles(child, logFiles);
+            }
+        }
+    }
+
+    private static void print(File weightFile, Tally total, int fileCount, long elapsedNanos, int parallelism) {
+        long attempts = Math.max(total.attempts, 1);
+        System.out.println("backend: JavaDigitClassifier with " + weightFile.getName()
+                + " (java/quantized backends only, not the TensorFlow graph)");
+        System.out.println(String.format("attempts: %d from %d logs (%d skipped), %d ms on %d threads, %.0f attempts/s, pipeline %d us per attempt",
+                total.attempts,
+                fileCount,
+                total.skipped,
+                elapsedNanos / 1000000,
+                parallelism,
+                total.attempts * 1e9 / Math.max(elapsedNanos, 1),
+                total.pipelineNanos / attempts / 1000));
+        System.out.println(String.format("accuracy: %.2f%% (recorded: %.2f%%), changed decisions: %d",
+                100.0 * total.correct() / attempts,
+                100.0 * total.recordedCorrect / attempts,
+                total.changedDecisions));
+
+        System.out.println();
+        System.out.println("digit  attempts  accuracy");
+        for (int digit = 0; digit < total.confusion.length; digit++) {
+            long digitAttempts = 0;
+            for (long count : total.confusion[digit]) {
+                digitAttempts += count;
+            }
+            System.out.println(String.format("%5d  %8d  %7.2f%%",
+                    digit,
+                    digitAttempts,
+                    100.0 * total.confusion[digit][digit] / Math.max(digitAttempts, 1)));
+        }
+        System.out.println(String.format("%5s  %8d  %7.2f%%",
+                "10+",
+                total.multiDigitAttempts,
+                100.0 * total.multiDigitCorrect / Math.max(total.multiDigitAttempts, 1)));
+
+        System.out.println();
+        System.out.println("confusion matrix of the digits, rows: number to write, columns: recognized (- for none)");
+        StringBuilder header = new StringBuilder("     ");
+        for (int column = 0; column < NONE_COLUMN; column++) {
+            header.append(String.format("%7d", column));
+        }
+        header.append(String.format("%7s", "-"));
+        System.out.println(header);
+        for (int digit = 0; digit < total.confusion.length; digit++) {
+            StringBuilder row = new StringBuilder(String.format("%5d", digit));
+            for (long count : total.confusion[digit]) {
+                row.append(String.format("%7d", count));
+            }
+            System.out.println(row);
+        }
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+    }
+}